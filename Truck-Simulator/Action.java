@@ -0,0 +1,117 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Action lists the operations that can appear in an input file. Every operation has an opcode,
+ * which is used wherever actions are stored or written in a compact form (for example in the binary result stream).
+ */
+public class Action {
+    static final int CREATE_PARKING_LOT = 0;  // create_parking_lot <capacity constraint> <truck limit>
+    static final int DELETE_PARKING_LOT = 1;  // delete_parking_lot <capacity constraint>
+    static final int ADD_TRUCK = 2;           // add_truck <id> <capacity>
+    static final int READY = 3;               // ready <capacity constraint>
+    static final int LOAD = 4;                // load <capacity constraint> <load amount>
+    static final int COUNT = 5;               // count <capacity constraint>
+    static final int ADD_TRUCKS = 6;          // add_trucks <capacity> <id> [<id> ...]
+    static final int READY_N = 7;             // ready_n <capacity constraint> <n>
+    static final int LOAD_BATCH = 8;          // load_batch <capacity constraint> <load amount> [<capacity constraint> <load amount> ...]
+    static final int UNKNOWN = -1;            // a line whose action is not known, it only takes up an action index
+
+    // names of the actions as they are written in the input file, indexed by opcode
+    private static final String[] NAMES = {
+            "create_parking_lot", "delete_parking_lot", "add_truck", "ready", "load", "count",
+            "add_trucks", "ready_n", "load_batch"
+    };
+
+    // the names as ASCII bytes, for decoders that do not make strings
+    private static final byte[][] NAME_BYTES = new byte[NAMES.length][];
+
+    static {
+        for (int opcode = 0; opcode < NAMES.length; opcode++) {
+            NAME_BYTES[opcode] = NAMES[opcode].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // number of operands of each action, indexed by opcode, the smallest number for actions with variable operands
+    private static final int[] OPERAND_COUNTS = {2, 1, 2, 1, 2, 1, 2, 2, 2};
+    // whether each action takes every operand up to the end of its line
+    private static final boolean[] VARIABLE_OPERANDS = {false, false, false, false, false, false, true, false, true};
+
+    private Action() {
+    }
+
+    /**
+     * Finds the opcode of the action with the given name.
+     *
+     * @param name Name of the action as written in the input file
+     * @return The opcode of the action, or -1 if there is no action with that name
+     */
+    static int parse(String name) {
+        for (int opcode = 0; opcode < NAMES.length; opcode++) {
+            if (NAMES[opcode].equals(name)) {
+                return opcode;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Finds the opcode of the action whose name is written in ASCII in part of a byte array.
+     *
+     * @param bytes Array holding the name
+     * @param from  Index of the first byte of the name
+     * @param to    Index after the last byte of the name
+     * @return The opcode of the action, or -1 if there is no action with that name
+     */
+    static int parse(byte[] bytes, int from, int to) {
+        for (int opcode = 0; opcode < NAME_BYTES.length; opcode++) {
+            if (Arrays.equals(NAME_BYTES[opcode], 0, NAME_BYTES[opcode].length, bytes, from, to)) {
+                return opcode;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @param opcode Opcode of the action
+     * @return The number of operands that follow the name of the action, the smallest one if it is variable
+     */
+    static int operandCount(int opcode) {
+        return OPERAND_COUNTS[opcode];
+    }
+
+    /**
+     * @param opcode Opcode of the action
+     * @param words  Number of words that follow the name of the action on its line
+     * @return The number of operands to be parsed from the line, more than the words if some are missing
+     */
+    static int operandCount(int opcode, int words) {
+        return VARIABLE_OPERANDS[opcode] ? Math.max(words, OPERAND_COUNTS[opcode]) : OPERAND_COUNTS[opcode];
+    }
+
+    /**
+     * @param opcode Opcode of the action
+     * @return True if the action takes all numbers up to the end of its line as operands
+     */
+    static boolean hasVariableOperands(int opcode) {
+        return VARIABLE_OPERANDS[opcode];
+    }
+
+    /**
+     * Bulk actions stand for a sequence of add_truck, ready or load actions and take an action index for each.
+     *
+     * @param opcode Opcode of the action
+     * @return True if the action is a bulk action
+     */
+    static boolean isBulk(int opcode) {
+        return opcode == ADD_TRUCKS || opcode == READY_N || opcode == LOAD_BATCH;
+    }
+
+    /**
+     * @param opcode Opcode of the action
+     * @return The name of the action as written in the input file
+     */
+    static String name(int opcode) {
+        return NAMES[opcode];
+    }
+}
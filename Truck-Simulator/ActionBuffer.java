@@ -0,0 +1,133 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * ActionBuffer holds a sequence of decoded actions in primitive arrays: the opcode of every action,
+ * and all operands one after another in a single array with the offset of each action's first operand.
+ * Actions are appended with add() followed by addOperand() for each of their operands.
+ */
+public class ActionBuffer {
+    private int[] opcodes = new int[16];     // opcode of each action
+    private int[] offsets = new int[17];     // offset of the first operand of each action, offsets[size] is the end
+    private long[] operands = new long[32];  // operands of all actions
+    private int size;                        // number of actions
+    private int operandCount;                // number of operands of all actions
+
+    /**
+     * Reads all actions of an input file, one per line as addLine() parses them, so lines with an unknown action
+     * take up an action index like they do when a Simulator executes the file.
+     *
+     * @param file The input file
+     * @return The actions of the file
+     * @throws FileNotFoundException If the file does not exist
+     * @throws NumberFormatException If an operand is not a number
+     */
+    static ActionBuffer read(File file) throws FileNotFoundException {
+        ActionBuffer actions = new ActionBuffer();
+        try (Scanner input = new Scanner(file)) {
+            while (input.hasNextLine()) {
+                actions.addLine(input.nextLine());
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Parses a line of an input file and appends its action, or Action.UNKNOWN if the action is not known.
+     * Nothing is appended if an operand cannot be parsed.
+     *
+     * @param line The line to be parsed
+     * @throws NumberFormatException If an operand is not a number
+     */
+    void addLine(String line) {
+        String[] info = line.split(" ");
+        int opcode = Action.parse(info[0]);
+        if (opcode == Action.UNKNOWN) {
+            add(Action.UNKNOWN);
+            return;
+        }
+        long[] values = new long[Action.operandCount(opcode, info.length - 1)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Long.parseLong(info[i + 1]);
+        }
+        add(opcode);
+        for (long value : values) {
+            addOperand(value);
+        }
+    }
+
+    /**
+     * Appends an action without operands.
+     *
+     * @param opcode Opcode of the action
+     */
+    void add(int opcode) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        opcodes[size++] = opcode;
+        offsets[size] = operandCount;
+    }
+
+    /**
+     * Appends an operand to the last action.
+     *
+     * @param operand The operand to be added
+     */
+    void addOperand(long operand) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = operand;
+        offsets[size] = operandCount;
+    }
+
+    /**
+     * Removes all actions, keeping the arrays for reuse.
+     */
+    void clear() {
+        size = 0;
+        operandCount = 0;
+    }
+
+    /**
+     * @return The number of actions in the buffer
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param action Index of the action
+     * @return The opcode of the action
+     */
+    int opcode(int action) {
+        return opcodes[action];
+    }
+
+    /**
+     * @param action Index of the action
+     * @return The offset of the action's first operand in operands()
+     */
+    int operandOffset(int action) {
+        return offsets[action];
+    }
+
+    /**
+     * @param action Index of the action
+     * @return The number of operands of the action
+     */
+    int operandCount(int action) {
+        return offsets[action + 1] - offsets[action];
+    }
+
+    /**
+     * @return The array holding the operands of all actions, which must not be modified
+     */
+    long[] operands() {
+        return operands;
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * AdaptiveLotIndex uses a FlatLotIndex while it holds at most THRESHOLD lots and an AVL tree above that.
+ * It moves to the tree when an insertion exceeds the threshold, and back to the flat arrays when deletions
+ * bring it below half of the threshold, so a size around the threshold does not switch back and forth.
+ * In "java Benchmark index" single insertions and deletions of the flat arrays fall behind the tree at about
+ * 2k lots, but whole runs stay faster with the flat arrays up to 64k lots because their lookups and counts
+ * are much cheaper, so THRESHOLD is 64k.
+ */
+public class AdaptiveLotIndex implements LotIndex {
+    static final int THRESHOLD = 65_536;
+
+    private final boolean tracksOccupancy;  // whether the tree keeps occupancy aggregates
+    private FlatLotIndex flat = new FlatLotIndex();  // the lots while there are few of them, otherwise null
+    private MyAvlTree tree;                          // the lots while there are many of them, otherwise null
+    private LotIndex current = flat;                 // the one of the two that is in use
+
+    /**
+     * @param tracksOccupancy True if the AVL tree has to keep occupancy aggregates for findBestLot()
+     */
+    public AdaptiveLotIndex(boolean tracksOccupancy) {
+        this.tracksOccupancy = tracksOccupancy;
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        current.insertElement(element);
+        if (flat != null && flat.size() > THRESHOLD) {
+            tree = new MyAvlTree(tracksOccupancy);
+            tree.buildFromSorted(flat.sortedElements(), flat.size());
+            flat = null;
+            current = tree;
+        }
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        current.deleteElement(capacityConstraint);
+        if (tree != null && tree.size() < THRESHOLD / 2) {
+            flat = new FlatLotIndex();
+            tree.forEachElement(flat::insertElement); // appends, since the lots come in increasing order
+            tree = null;
+            current = flat;
+        }
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        return current.searchElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        return current.findHighestSmallerElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        return current.findLeastBiggerElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        return current.findFloorElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        return current.findCeilingElement(capacityConstraint);
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        return current.countTrucksInLargerLots(capacityConstraint);
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        current.forEachElement(action);
+    }
+
+    // the flat arrays always need refreshing, so the listener has to be registered from the start
+    @Override
+    public boolean cachesOccupancy() {
+        return true;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        current.refresh(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        return current.findBestLot(low, high, scoring);
+    }
+
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        return current.findFirstAvailableLot(low, high);
+    }
+
+    @Override
+    public void close() throws IOException {
+        current.close();
+    }
+}
@@ -0,0 +1,559 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * BTreeLotIndex is an in-memory B+tree whose nodes hold their keys in arrays, so a lookup reads a few cache
+ * lines of consecutive capacity constraints per level instead of one scattered node per comparison, and the
+ * tree is about six levels shallower than a binary tree. Leaves hold the lots with their truck numbers, like
+ * FlatLotIndex does for the whole index, and are linked in both directions, so floor and ceiling lookups and
+ * counting move along the leaves. Deletions borrow from or merge with a neighbouring node to keep every node
+ * but the root at least half full. A tree that tracks occupancy keeps the most free slots and the fewest trucks of
+ * the lots below every node; every change recomputes them for the nodes on its path from their entries, so
+ * findBestLot() reads the summaries of the children inside the range and descends only into the two at its ends.
+ */
+class BTreeLotIndex implements LotIndex {
+    private static final int LEAF_CAPACITY = 64;
+    private static final int INNER_CAPACITY = 64;             // keys of an inner node, it has one more child
+    private static final int MIN_LEAF = LEAF_CAPACITY / 2;
+    private static final int MIN_INNER = INNER_CAPACITY / 2;
+
+    // a leaf or an inner node; the arrays have room for one entry more than the capacity until a split
+    private static class BNode {
+        final long[] keys;          // capacity constraints of a leaf, or smallest key of every child but the first
+        final ParkingLot[] lots;    // leaves only: lot of each key
+        final long[] trucks;        // leaves only: number of trucks in each lot
+        final BNode[] children;     // inner nodes only
+        int count;                  // number of keys
+        BNode next;                 // leaves only: neighbouring leaves
+        BNode previous;
+        long maxFreeSlots = Long.MIN_VALUE;     // most free slots among the lots below (occupancy-tracking trees only)
+        long minTruckNumber = Long.MAX_VALUE;   // fewest trucks among the available lots below (same)
+
+        BNode(boolean leaf) {
+            if (leaf) {
+                keys = new long[LEAF_CAPACITY + 1];
+                lots = new ParkingLot[LEAF_CAPACITY + 1];
+                trucks = new long[LEAF_CAPACITY + 1];
+                children = null;
+            } else {
+                keys = new long[INNER_CAPACITY + 1];
+                lots = null;
+                trucks = null;
+                children = new BNode[INNER_CAPACITY + 2];
+            }
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private BNode rootNode = new BNode(true);
+    private int size;            // number of lots
+    private long splitKey;       // smallest key of the node split off by the last insertion
+    // when true, nodes keep the occupancy summaries of the lots below them, which findBestLot() relies on
+    private final boolean tracksOccupancy;
+
+    BTreeLotIndex(boolean tracksOccupancy) {
+        this.tracksOccupancy = tracksOccupancy;
+    }
+
+    // index of the first key of a node that is not less than the given one, or count if there is none
+    private static int lowerBound(BNode node, long key) {
+        long[] keys = node.keys;
+        int low = 0;
+        int high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // index of the first key of a node greater than the given one, or count if there is none
+    private static int upperBound(BNode node, long key) {
+        long[] keys = node.keys;
+        int low = 0;
+        int high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // the leaf whose key range holds the given key
+    private BNode findLeaf(long key) {
+        BNode node = rootNode;
+        while (!node.isLeaf()) {
+            node = node.children[upperBound(node, key)];
+        }
+        return node;
+    }
+
+    private static long truckNumber(ParkingLot lot) {
+        return lot.getTruckNumberInWaiting() + lot.getTruckNumberInReady();
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        BNode split = insertElement(rootNode, element);
+        if (split != null) {
+            // the root was split, the tree grows by one level
+            BNode root = new BNode(false);
+            root.keys[0] = splitKey;
+            root.children[0] = rootNode;
+            root.children[1] = split;
+            root.count = 1;
+            summarize(root);
+            rootNode = root;
+        }
+    }
+
+    // inserts below a node, returns the new right neighbour of the node if it had to be split, or null
+    private BNode insertElement(BNode node, ParkingLot element) {
+        long key = element.getCapacityConstraint();
+        if (node.isLeaf()) {
+            int index = lowerBound(node, key);
+            if (index < node.count && node.keys[index] == key) {
+                return null; // the lot is already in the index
+            }
+            int moved = node.count - index;
+            System.arraycopy(node.keys, index, node.keys, index + 1, moved);
+            System.arraycopy(node.lots, index, node.lots, index + 1, moved);
+            System.arraycopy(node.trucks, index, node.trucks, index + 1, moved);
+            node.keys[index] = key;
+            node.lots[index] = element;
+            node.trucks[index] = truckNumber(element);
+            node.count++;
+            size++;
+            return summarizeSplit(node, node.count > LEAF_CAPACITY ? splitLeaf(node) : null);
+        }
+        int childIndex = upperBound(node, key);
+        BNode split = insertElement(node.children[childIndex], element);
+        if (split == null) {
+            summarize(node);
+            return null;
+        }
+        int moved = node.count - childIndex;
+        System.arraycopy(node.keys, childIndex, node.keys, childIndex + 1, moved);
+        System.arraycopy(node.children, childIndex + 1, node.children, childIndex + 2, moved);
+        node.keys[childIndex] = splitKey;
+        node.children[childIndex + 1] = split;
+        node.count++;
+        return summarizeSplit(node, node.count > INNER_CAPACITY ? splitInner(node) : null);
+    }
+
+    // summarizes a node that gained an entry and the node split off from it, if any, which it returns
+    private BNode summarizeSplit(BNode node, BNode split) {
+        summarize(node);
+        if (split != null) {
+            summarize(split);
+        }
+        return split;
+    }
+
+    // moves the upper half of an overfull leaf to a new leaf
+    private BNode splitLeaf(BNode leaf) {
+        BNode right = new BNode(true);
+        int keep = leaf.count / 2;
+        right.count = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, right.count);
+        System.arraycopy(leaf.lots, keep, right.lots, 0, right.count);
+        System.arraycopy(leaf.trucks, keep, right.trucks, 0, right.count);
+        Arrays.fill(leaf.lots, keep, leaf.count, null);
+        leaf.count = keep;
+        right.next = leaf.next;
+        right.previous = leaf;
+        if (leaf.next != null) {
+            leaf.next.previous = right;
+        }
+        leaf.next = right;
+        splitKey = right.keys[0];
+        return right;
+    }
+
+    // moves the upper half of an overfull inner node to a new node, the middle key moves up to the parent
+    private BNode splitInner(BNode node) {
+        BNode right = new BNode(false);
+        int keep = node.count / 2;
+        splitKey = node.keys[keep];
+        right.count = node.count - keep - 1;
+        System.arraycopy(node.keys, keep + 1, right.keys, 0, right.count);
+        System.arraycopy(node.children, keep + 1, right.children, 0, right.count + 1);
+        Arrays.fill(node.children, keep + 1, node.count + 1, null);
+        node.count = keep;
+        return right;
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        deleteElement(rootNode, capacityConstraint);
+        if (!rootNode.isLeaf() && rootNode.count == 0) {
+            rootNode = rootNode.children[0]; // the tree shrinks by one level
+        }
+    }
+
+    // deletes below a node and fixes children that become less than half full
+    private void deleteElement(BNode node, long capacityConstraint) {
+        if (node.isLeaf()) {
+            int index = lowerBound(node, capacityConstraint);
+            if (index == node.count || node.keys[index] != capacityConstraint) {
+                return; // there is no such lot
+            }
+            int moved = node.count - index - 1;
+            System.arraycopy(node.keys, index + 1, node.keys, index, moved);
+            System.arraycopy(node.lots, index + 1, node.lots, index, moved);
+            System.arraycopy(node.trucks, index + 1, node.trucks, index, moved);
+            node.lots[--node.count] = null;
+            size--;
+            summarize(node);
+            return;
+        }
+        int childIndex = upperBound(node, capacityConstraint);
+        BNode child = node.children[childIndex];
+        deleteElement(child, capacityConstraint);
+        if (child.count < (child.isLeaf() ? MIN_LEAF : MIN_INNER)) {
+            rebalance(node, childIndex);
+            // entries moved between the child and its neighbours
+            for (int i = Math.max(childIndex - 1, 0); i <= Math.min(childIndex + 1, node.count); i++) {
+                summarize(node.children[i]);
+            }
+        }
+        summarize(node);
+    }
+
+    // refills a child that is less than half full from a neighbour, or merges it with one
+    private void rebalance(BNode parent, int childIndex) {
+        BNode child = parent.children[childIndex];
+        BNode left = childIndex > 0 ? parent.children[childIndex - 1] : null;
+        BNode right = childIndex < parent.count ? parent.children[childIndex + 1] : null;
+        int minimum = child.isLeaf() ? MIN_LEAF : MIN_INNER;
+        if (left != null && left.count > minimum) {
+            borrowFromLeft(parent, childIndex);
+        } else if (right != null && right.count > minimum) {
+            borrowFromRight(parent, childIndex);
+        } else if (left != null) {
+            merge(parent, childIndex - 1);
+        } else {
+            merge(parent, childIndex);
+        }
+    }
+
+    // moves the last entry of the left neighbour to the front of a child
+    private void borrowFromLeft(BNode parent, int childIndex) {
+        BNode child = parent.children[childIndex];
+        BNode left = parent.children[childIndex - 1];
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        if (child.isLeaf()) {
+            System.arraycopy(child.lots, 0, child.lots, 1, child.count);
+            System.arraycopy(child.trucks, 0, child.trucks, 1, child.count);
+            left.count--;
+            child.keys[0] = left.keys[left.count];
+            child.lots[0] = left.lots[left.count];
+            child.trucks[0] = left.trucks[left.count];
+            left.lots[left.count] = null;
+            parent.keys[childIndex - 1] = child.keys[0];
+        } else {
+            // the separator comes down in front of the child, the last key of the neighbour goes up
+            System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+            child.keys[0] = parent.keys[childIndex - 1];
+            child.children[0] = left.children[left.count];
+            left.children[left.count] = null;
+            left.count--;
+            parent.keys[childIndex - 1] = left.keys[left.count];
+        }
+        child.count++;
+    }
+
+    // moves the first entry of the right neighbour to the end of a child
+    private void borrowFromRight(BNode parent, int childIndex) {
+        BNode child = parent.children[childIndex];
+        BNode right = parent.children[childIndex + 1];
+        if (child.isLeaf()) {
+            child.keys[child.count] = right.keys[0];
+            child.lots[child.count] = right.lots[0];
+            child.trucks[child.count] = right.trucks[0];
+            right.count--;
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count);
+            System.arraycopy(right.lots, 1, right.lots, 0, right.count);
+            System.arraycopy(right.trucks, 1, right.trucks, 0, right.count);
+            right.lots[right.count] = null;
+            parent.keys[childIndex] = right.keys[0];
+        } else {
+            child.keys[child.count] = parent.keys[childIndex];
+            child.children[child.count + 1] = right.children[0];
+            parent.keys[childIndex] = right.keys[0];
+            right.count--;
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count);
+            System.arraycopy(right.children, 1, right.children, 0, right.count + 1);
+            right.children[right.count + 1] = null;
+        }
+        child.count++;
+    }
+
+    // appends the child after the given one to it and removes it from the parent
+    private void merge(BNode parent, int leftIndex) {
+        BNode left = parent.children[leftIndex];
+        BNode right = parent.children[leftIndex + 1];
+        if (left.isLeaf()) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            System.arraycopy(right.lots, 0, left.lots, left.count, right.count);
+            System.arraycopy(right.trucks, 0, left.trucks, left.count, right.count);
+            left.count += right.count;
+            left.next = right.next;
+            if (right.next != null) {
+                right.next.previous = left;
+            }
+        } else {
+            // the separator comes down between the keys of the two nodes
+            left.keys[left.count] = parent.keys[leftIndex];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+            left.count += right.count + 1;
+        }
+        int moved = parent.count - leftIndex - 1;
+        System.arraycopy(parent.keys, leftIndex + 1, parent.keys, leftIndex, moved);
+        System.arraycopy(parent.children, leftIndex + 2, parent.children, leftIndex + 1, moved);
+        parent.children[parent.count] = null;
+        parent.count--;
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        int index = lowerBound(leaf, capacityConstraint);
+        return index < leaf.count && leaf.keys[index] == capacityConstraint ? leaf.lots[index] : null;
+    }
+
+    // only the root leaf can be empty, so the neighbouring leaf of a lookup that runs off a leaf has lots
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        int index = lowerBound(leaf, capacityConstraint) - 1;
+        if (index >= 0) {
+            return leaf.lots[index];
+        }
+        return leaf.previous != null ? leaf.previous.lots[leaf.previous.count - 1] : null;
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        int index = upperBound(leaf, capacityConstraint);
+        if (index < leaf.count) {
+            return leaf.lots[index];
+        }
+        return leaf.next != null ? leaf.next.lots[0] : null;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        int index = upperBound(leaf, capacityConstraint) - 1;
+        if (index >= 0) {
+            return leaf.lots[index];
+        }
+        return leaf.previous != null ? leaf.previous.lots[leaf.previous.count - 1] : null;
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        int index = lowerBound(leaf, capacityConstraint);
+        if (index < leaf.count) {
+            return leaf.lots[index];
+        }
+        return leaf.next != null ? leaf.next.lots[0] : null;
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        BNode leaf = findLeaf(capacityConstraint);
+        long total = 0;
+        for (int i = upperBound(leaf, capacityConstraint); i < leaf.count; i++) {
+            total += leaf.trucks[i];
+        }
+        for (leaf = leaf.next; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                total += leaf.trucks[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        BNode leaf = rootNode;
+        while (!leaf.isLeaf()) {
+            leaf = leaf.children[0];
+        }
+        for (; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                action.accept(leaf.lots[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return true;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        refresh(rootNode, capacityConstraint);
+    }
+
+    // updates the truck number of the lot and the summaries on the path to it, bottom up
+    private void refresh(BNode node, long capacityConstraint) {
+        if (node.isLeaf()) {
+            int index = lowerBound(node, capacityConstraint);
+            if (index < node.count && node.keys[index] == capacityConstraint) {
+                node.trucks[index] = truckNumber(node.lots[index]);
+            }
+        } else {
+            refresh(node.children[upperBound(node, capacityConstraint)], capacityConstraint);
+        }
+        summarize(node);
+    }
+
+    // recomputes the occupancy summary of a node from its lots or from the summaries of its children
+    private void summarize(BNode node) {
+        if (!tracksOccupancy) {
+            return;
+        }
+        long maxFreeSlots = Long.MIN_VALUE;
+        long minTruckNumber = Long.MAX_VALUE;
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.count; i++) {
+                long freeSlots = node.lots[i].getFreeSlots();
+                maxFreeSlots = Math.max(maxFreeSlots, freeSlots);
+                if (freeSlots > 0) {
+                    minTruckNumber = Math.min(minTruckNumber, node.trucks[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i <= node.count; i++) {
+                maxFreeSlots = Math.max(maxFreeSlots, node.children[i].maxFreeSlots);
+                minTruckNumber = Math.min(minTruckNumber, node.children[i].minTruckNumber);
+            }
+        }
+        node.maxFreeSlots = maxFreeSlots;
+        node.minTruckNumber = minTruckNumber;
+    }
+
+    // score of the lot at an index of a leaf, a higher score is better
+    private static long score(BNode leaf, int index, int scoring) {
+        if (scoring == FREE_SLOTS) {
+            return leaf.lots[index].getFreeSlots();
+        }
+        return leaf.lots[index].getAvailability() ? -leaf.trucks[index] : -Long.MAX_VALUE;
+    }
+
+    // best score of the lots below a node
+    private static long bestScore(BNode node, int scoring) {
+        return scoring == FREE_SLOTS ? node.maxFreeSlots : -node.minTruckNumber;
+    }
+
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findBestLot(low, high, scoring);
+        }
+        long target = bestScoreInRange(rootNode, low, high, scoring);
+        if (target == -Long.MAX_VALUE || (scoring == FREE_SLOTS && target <= 0)) {
+            return null; // no lot in the range can take a truck
+        }
+        return findRightmostWithScore(rootNode, low, high, target, scoring);
+    }
+
+    // best score of the lots below a node in [low, high]; the children strictly between the ones that hold low
+    // and high lie inside the range, so only those two are descended into
+    private static long bestScoreInRange(BNode node, long low, long high, int scoring) {
+        long best = -Long.MAX_VALUE;
+        if (node.isLeaf()) {
+            for (int i = lowerBound(node, low); i < node.count && node.keys[i] <= high; i++) {
+                best = Math.max(best, score(node, i, scoring));
+            }
+            return best;
+        }
+        int first = upperBound(node, low);
+        int last = upperBound(node, high);
+        for (int i = first; i <= last; i++) {
+            best = Math.max(best, i > first && i < last ? bestScore(node.children[i], scoring)
+                    : bestScoreInRange(node.children[i], low, high, scoring));
+        }
+        return best;
+    }
+
+    // the lot with the largest capacity constraint in [low, high] below a node whose score reaches the target,
+    // or null if there is none
+    private static ParkingLot findRightmostWithScore(BNode node, long low, long high, long target, int scoring) {
+        if (node.isLeaf()) {
+            for (int i = upperBound(node, high) - 1; i >= 0 && node.keys[i] >= low; i--) {
+                if (score(node, i, scoring) >= target) {
+                    return node.lots[i];
+                }
+            }
+            return null;
+        }
+        int first = upperBound(node, low);
+        int last = upperBound(node, high);
+        for (int i = last; i >= first; i--) {
+            if (i > first && i < last && bestScore(node.children[i], scoring) < target) {
+                continue; // inside the range, but without a lot that reaches the target
+            }
+            ParkingLot parkingLot = findRightmostWithScore(node.children[i], low, high, target, scoring);
+            if (parkingLot != null) {
+                return parkingLot;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findFirstAvailableLot(low, high);
+        }
+        return findFirstAvailable(rootNode, low, high);
+    }
+
+    // the lot with the smallest capacity constraint in [low, high] below a node that has free slots, or null if
+    // there is none; the children inside the range are passed over by their summaries
+    private static ParkingLot findFirstAvailable(BNode node, long low, long high) {
+        if (node.maxFreeSlots <= 0) {
+            return null; // no lot below the node can take a truck
+        }
+        if (node.isLeaf()) {
+            for (int i = lowerBound(node, low); i < node.count && node.keys[i] <= high; i++) {
+                if (node.lots[i].getFreeSlots() > 0) {
+                    return node.lots[i];
+                }
+            }
+            return null;
+        }
+        int last = upperBound(node, high);
+        for (int i = upperBound(node, low); i <= last; i++) {
+            ParkingLot parkingLot = findFirstAvailable(node.children[i], low, high);
+            if (parkingLot != null) {
+                return parkingLot;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,697 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Benchmark measures the simulator on generated workloads. The first argument selects the benchmark:
+ * <pre>
+ *   java Benchmark policies [actions] [lots]   compares the placement policies
+ *   java Benchmark sites [sites] [actions]     multi-site throughput for 1 to n worker threads
+ *   java Benchmark index                       lot index operations and whole runs of avl, flat and adaptive at growing sizes
+ *   java Benchmark backends [lots]             inserts, deletes and churn of the ordered index backends, and whole runs with many deletions
+ *   java Benchmark ready [lots] [actions]      fifo and best-fit ready sections: index operations and reloads per unit of load
+ *   java Benchmark lookups [lots] [actions]    floor and ceiling lookups with and without finger and cache, uniform and skewed
+ *   java Benchmark decode [actions]            decoding an input file with Scanner and with 1 to 8 parallel decoding threads
+ *   java Benchmark bulk [lots]                 add_trucks and ready_n against the same trucks added and made ready one by one
+ *   java Benchmark mapped [lots]               mapped index throughput, run it with a small -Xmx to exceed the heap
+ *   java Benchmark occupancy [lots] [actions]  time per action with and without recording the occupancy of the lots
+ * </pre>
+ * Every configuration is run several times on the same actions and the fastest run is reported.
+ */
+public class Benchmark {
+    private static final int ROUNDS = 5;  // runs of each configuration, the first ones warm up the JIT
+    private static final double[] SKEWS = {0, 0.99, 1.2};  // Zipf exponents of the lookup workloads
+
+    public static void main(String[] args) throws IOException {
+        String benchmark = args.length > 0 ? args[0] : "";
+        switch (benchmark) {
+            case "policies":
+                policies(intArgument(args, 1, 500_000), intArgument(args, 2, 2_000));
+                break;
+            case "sites":
+                sites(intArgument(args, 1, 2_000), intArgument(args, 2, 1_000));
+                break;
+            case "index":
+                index();
+                break;
+            case "backends":
+                backends(intArgument(args, 1, 262_144));
+                break;
+            case "ready":
+                ready(intArgument(args, 1, 2_000), intArgument(args, 2, 1_000_000));
+                break;
+            case "lookups":
+                lookups(intArgument(args, 1, 100_000), intArgument(args, 2, 1_000_000));
+                break;
+            case "decode":
+                decode(intArgument(args, 1, 5_000_000));
+                break;
+            case "bulk":
+                bulk(intArgument(args, 1, 2_000));
+                break;
+            case "mapped":
+                mapped(intArgument(args, 1, 20_000_000));
+                break;
+            case "occupancy":
+                occupancy(intArgument(args, 1, 2_000), intArgument(args, 2, 2_000_000));
+                break;
+            default:
+                System.out.println("usage: java Benchmark policies|sites|index|backends|ready|lookups|decode|bulk|mapped|occupancy [arguments]");
+        }
+    }
+
+    // measures the cost of an OccupancyRecorder on full-speed runs, and how many buckets it keeps at the end;
+    // the runs with and without it alternate so that both see the same state of the JIT and the heap
+    private static void occupancy(int lotCount, int actionCount) throws IOException {
+        ActionBuffer actions = new WorkloadGenerator(13, lotCount, 10).generate(actionCount);
+        long fastestWithout = Long.MAX_VALUE;
+        long fastestWith = Long.MAX_VALUE;
+        long buckets = 0;
+        for (int round = 0; round < 2 * ROUNDS; round++) {
+            Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), new ResultSummary());
+            OccupancyRecorder recorder = round % 2 == 1 ? simulator.recordOccupancy() : null;
+            long start = System.nanoTime();
+            simulator.execute(actions);
+            long time = System.nanoTime() - start;
+            if (recorder == null) {
+                fastestWithout = Math.min(fastestWithout, time);
+            } else {
+                fastestWith = Math.min(fastestWith, time);
+                buckets = 0;
+                for (long lot : recorder.lots()) {
+                    buckets += recorder.history(lot).size();
+                }
+            }
+        }
+        System.out.printf("%-10s %12s %10s%n", "recorder", "ns/action", "buckets");
+        System.out.printf("%-10s %12.1f %10s%n", "off", (double) fastestWithout / actionCount, "-");
+        System.out.printf("%-10s %12.1f %10d%n", "on", (double) fastestWith / actionCount, buckets);
+        System.out.printf("overhead %.1f%%%n", 100.0 * (fastestWith - fastestWithout) / fastestWithout);
+    }
+
+    // returns the argument at the given position, or the default value if it is not given
+    private static int intArgument(String[] args, int position, int defaultValue) {
+        return args.length > position ? Integer.parseInt(args[position]) : defaultValue;
+    }
+
+    // compares the time per action of the placement policies and how often trucks cannot be placed
+    private static void policies(int actionCount, int lotCount) throws IOException {
+        ActionBuffer actions = new WorkloadGenerator(1, lotCount, 20).generate(actionCount);
+        String[] policies = {"best-fit", "most-free", "most-free:100", "least-loaded", "least-loaded:100",
+                "round-robin", "round-robin:100"};
+        System.out.printf("%-18s %10s %12s %14s%n", "policy", "ns/action", "failed adds", "failed loads");
+        for (String policy : policies) {
+            long fastest = Long.MAX_VALUE;
+            ResultSummary summary = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                summary = new ResultSummary();
+                Simulator simulator = new Simulator(PlacementPolicies.forName(policy), summary);
+                long start = System.nanoTime();
+                simulator.execute(actions);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+            System.out.printf("%-18s %10.1f %12d %14d%n", policy, (double) fastest / actionCount,
+                    summary.failures(Action.ADD_TRUCK), summary.failures(Action.LOAD));
+        }
+    }
+
+    // measures how the throughput of a SiteRouter grows with the number of worker threads
+    private static void sites(int siteCount, int actionsPerSite) throws IOException {
+        ActionBuffer[] workloads = new ActionBuffer[siteCount];
+        for (int site = 0; site < siteCount; site++) {
+            workloads[site] = new WorkloadGenerator(site, 100, 10).generate(actionsPerSite);
+        }
+        System.out.printf("%-8s %14s%n", "threads", "actions/s");
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            long fastest = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                SiteRouter router = new SiteRouter(threads, "best-fit", "avl", siteId -> new ResultSummary());
+                // the sites' actions are interleaved as they would be in a multi-site input file
+                for (int action = 0; action < actionsPerSite; action++) {
+                    for (int site = 0; site < siteCount; site++) {
+                        ActionBuffer workload = workloads[site];
+                        router.submit(site, workload.opcode(action), workload.operands(),
+                                workload.operandOffset(action), workload.operandCount(action));
+                    }
+                }
+                router.close();
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+            System.out.printf("%-8d %14.0f%n", threads, (double) siteCount * actionsPerSite / fastest * 1e9);
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+
+    // compares lookups, counting and insertion/deletion of the avl and flat indexes, to find where they cross,
+    // then whole simulations whose lots grow to about the given numbers under each kind of placement policy
+    private static void index() throws IOException {
+        String[] indexes = {"avl", "flat"};
+        System.out.printf("%-8s %-6s %12s %12s %12s%n", "lots", "index", "lookup ns", "count ns", "update ns");
+        for (int lotCount = 64; lotCount <= 262_144; lotCount *= 4) {
+            for (String indexName : indexes) {
+                long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+                for (int round = 0; round < ROUNDS; round++) {
+                    long[] times = measureIndex(indexName, lotCount);
+                    for (int i = 0; i < best.length; i++) {
+                        best[i] = Math.min(best[i], times[i]);
+                    }
+                }
+                System.out.printf("%-8d %-6s %12.1f %12.1f %12.1f%n", lotCount, indexName,
+                        best[0] / 100_000.0, best[1] / 100_000.0, best[2] / 100_000.0);
+            }
+        }
+        // the policies that search a range of lots (findBestLot) use the occupancy aggregates of the indexes
+        System.out.printf("%n%-8s %-13s %-9s %12s%n", "lots", "policy", "index", "ns/action");
+        for (int lotCount = 1024; lotCount <= 65_536; lotCount *= 2) {
+            // creations outnumber deletions 4 to 1, so the number of lots approaches the number of candidates
+            ActionBuffer actions = new WorkloadGenerator(lotCount, lotCount, 10).generate(Math.min(lotCount * 40, 400_000));
+            for (String policy : new String[]{"best-fit", "most-free", "least-loaded"}) {
+                for (String indexName : new String[]{"avl", "flat", "adaptive"}) {
+                    long fastest = Long.MAX_VALUE;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Simulator simulator = new Simulator(PlacementPolicies.forName(policy), indexName, new ResultSummary());
+                        long start = System.nanoTime();
+                        simulator.execute(actions);
+                        fastest = Math.min(fastest, System.nanoTime() - start);
+                        simulator.close();
+                    }
+                    System.out.printf("%-8d %-13s %-9s %12.1f%n", lotCount, policy, indexName,
+                            (double) fastest / actions.size());
+                }
+            }
+        }
+    }
+
+    // fills an index with lots holding random trucks and returns the nanoseconds taken by the lookups, counts and updates
+    private static long[] measureIndex(String indexName, int lotCount) {
+        final int operations = 100_000;  // lookups and updates, and the number of counts the count time is scaled to
+        Random random = new Random(lotCount);
+        LotTable lotTable = new LotTable();
+        LotIndex index = LotIndexes.create(indexName, lotTable, false);
+        lotTable.addListener(handle -> index.refresh(lotTable.getCapacityConstraint(handle)));
+        for (int i = 0; i < lotCount; i++) {
+            ParkingLot parkingLot = new ParkingLot(lotTable, i * 10L, 8);
+            index.insertElement(parkingLot);
+            for (int trucks = random.nextInt(8); trucks > 0; trucks--) {
+                parkingLot.addTruck(new Truck(i, i * 10L));
+            }
+        }
+        long[] keys = new long[operations];
+        for (int i = 0; i < operations; i++) {
+            keys[i] = random.nextInt(lotCount * 10);
+        }
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (long key : keys) {
+            ParkingLot parkingLot = index.searchElement(key);
+            if (parkingLot == null) {
+                parkingLot = index.findHighestSmallerElement(key);
+            }
+            if (parkingLot == null) {
+                parkingLot = index.findLeastBiggerElement(key);
+            }
+            checksum += parkingLot.getCapacityConstraint();
+        }
+        long lookups = System.nanoTime() - start;
+        int counts = Math.max(operations / lotCount, 100);  // counting is linear, fewer of them keep runs short
+        start = System.nanoTime();
+        for (int i = 0; i < counts; i++) {
+            checksum += index.countTrucksInLargerLots(keys[i]);
+        }
+        long counting = (System.nanoTime() - start) * operations / counts;
+        start = System.nanoTime();
+        for (long key : keys) {
+            // an extra lot is inserted between two existing ones and deleted again
+            long capacityConstraint = key / 10 * 10 + 5;
+            ParkingLot extraLot = new ParkingLot(lotTable, capacityConstraint, 1);
+            index.insertElement(extraLot);
+            index.deleteElement(capacityConstraint);
+            extraLot.release();
+        }
+        long updates = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println(); // keeps the JIT from removing the lookups
+        }
+        return new long[]{lookups, counting, updates};
+    }
+
+    // compares the ordered index backends on insertions and deletions in random order at growing sizes,
+    // then on whole runs whose creations and deletions keep the number of lots steady
+    private static void backends(int maxLots) throws IOException {
+        String[] indexes = {"avl", "wavl", "treap", "btree", "flat"};
+        final int flatLimit = 65_536;  // the flat index shifts its arrays on every change
+        System.out.printf("%-8s %-6s %12s %12s %12s %12s%n", "lots", "index", "insert ns", "delete ns", "churn ns", "floor ns");
+        for (int lotCount = 1024; lotCount <= maxLots; lotCount *= 16) {
+            for (String indexName : indexes) {
+                if (indexName.equals("flat") && lotCount > flatLimit) {
+                    continue;
+                }
+                long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+                for (int round = 0; round < ROUNDS; round++) {
+                    long[] times = measureBackend(indexName, lotCount);
+                    for (int i = 0; i < best.length; i++) {
+                        best[i] = Math.min(best[i], times[i]);
+                    }
+                }
+                System.out.printf("%-8d %-6s %12.1f %12.1f %12.1f %12.1f%n", lotCount, indexName,
+                        (double) best[0] / lotCount, (double) best[1] / lotCount,
+                        (double) best[2] / lotCount, (double) best[3] / lotCount);
+            }
+        }
+        System.out.printf("%n%-8s %-6s %12s%n", "lots", "index", "ns/action");
+        for (int lotCount = 1024; lotCount <= 16_384; lotCount *= 4) {
+            // as many deletions as creations, about half of the candidates have a lot at any time
+            ActionBuffer actions = new WorkloadGenerator(lotCount * 2, lotCount, 10).generate(lotCount * 40);
+            for (String indexName : indexes) {
+                long fastest = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), indexName, new ResultSummary());
+                    long start = System.nanoTime();
+                    simulator.execute(actions);
+                    fastest = Math.min(fastest, System.nanoTime() - start);
+                    simulator.close();
+                }
+                System.out.printf("%-8d %-6s %12.1f%n", lotCount, indexName, (double) fastest / actions.size());
+            }
+        }
+    }
+
+    // returns the times of inserting lots in random order, deleting them in another random order,
+    // replacing every lot of a full index by a new one, and floor lookups, each for as many operations as lots
+    private static long[] measureBackend(String indexName, int lotCount) {
+        Random random = new Random(lotCount);
+        LotTable lotTable = new LotTable();
+        LotIndex index = LotIndexes.create(indexName, lotTable, false);
+        // lots come in pairs of neighbouring capacity constraints, the index holds one lot of every pair
+        ParkingLot[] lots = new ParkingLot[lotCount * 2];
+        for (int i = 0; i < lots.length; i++) {
+            lots[i] = new ParkingLot(lotTable, i * 10L, 8);
+        }
+        int[] order = shuffledRange(lotCount, random);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i : order) {
+            index.insertElement(lots[2 * i]);
+        }
+        long inserts = System.nanoTime() - start;
+        order = shuffledRange(lotCount, random);
+        start = System.nanoTime();
+        for (int i : order) {
+            index.deleteElement(2 * i * 10L);
+        }
+        long deletes = System.nanoTime() - start;
+        for (int i : order) {
+            index.insertElement(lots[2 * i]);
+        }
+        // churn replaces the lot of every pair by the other lot of the pair
+        order = shuffledRange(lotCount, random);
+        start = System.nanoTime();
+        for (int i : order) {
+            index.deleteElement(2 * i * 10L);
+            index.insertElement(lots[2 * i + 1]);
+        }
+        long churn = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < lotCount; i++) {
+            ParkingLot parkingLot = index.findFloorElement(random.nextInt(lotCount * 20));
+            checksum += parkingLot == null ? 0 : parkingLot.getCapacityConstraint();
+        }
+        long floors = System.nanoTime() - start;
+        if (checksum == 42 || index.size() != lotCount) {
+            System.out.println(); // keeps the JIT from removing the lookups
+        }
+        return new long[]{inserts, deletes, churn, floors};
+    }
+
+    // the numbers 0 to count - 1 in random order
+    private static int[] shuffledRange(int count, Random random) {
+        int[] numbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            int j = random.nextInt(i + 1);
+            numbers[i] = numbers[j];
+            numbers[j] = i;
+        }
+        return numbers;
+    }
+
+    // runs the same actions with fifo and best-fit ready sections and counts the operations on the four lot indexes
+    // and the trucks that go back to a lot after loading, both per 1000 units of delivered load; the generated
+    // workloads put trucks of nearly equal capacity in a lot, the coarse one puts very different trucks in a lot
+    private static void ready(int lotCount, int actionCount) throws IOException {
+        System.out.printf("%-9s %-9s %12s %14s %14s %14s %12s%n", "workload", "ready", "load", "updates/1k",
+                "lookups/1k", "reloads/1k", "ns/action");
+        for (int workload = 0; workload <= SKEWS.length; workload++) {
+            ActionBuffer actions = workload < SKEWS.length
+                    ? new WorkloadGenerator(11, lotCount, 10, SKEWS[workload]).generate(actionCount)
+                    : coarseLotActions(actionCount);
+            String workloadName = workload < SKEWS.length ? String.format("zipf %.2f", SKEWS[workload]) : "coarse";
+            for (boolean bestFitReady : new boolean[]{false, true}) {
+                long fastest = Long.MAX_VALUE;
+                long updates = 0;
+                long lookups = 0;
+                long load = 0;
+                long reloads = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    ResultSummary summary = new ResultSummary();
+                    Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), "counted:avl",
+                            bestFitReady, summary);
+                    long start = System.nanoTime();
+                    simulator.execute(actions);
+                    fastest = Math.min(fastest, System.nanoTime() - start);
+                    updates = 0;
+                    lookups = 0;
+                    for (LotIndex index : simulator.indexes()) {
+                        updates += ((CountingLotIndex) index).updates();
+                        lookups += ((CountingLotIndex) index).lookups();
+                    }
+                    load = simulator.deliveredLoad();
+                    // a truck that goes back to a lot after loading writes a record with the lot
+                    reloads = summary.records(Action.LOAD) - summary.failures(Action.LOAD);
+                }
+                double thousands = load / 1000.0;
+                System.out.printf("%-9s %-9s %12d %14.1f %14.1f %14.1f %12.1f%n", workloadName,
+                        bestFitReady ? "best-fit" : "fifo", load, updates / thousands, lookups / thousands,
+                        reloads / thousands, (double) fastest / actions.size());
+            }
+        }
+    }
+
+    // twenty lots 50 apart with room for every truck, and trucks of any capacity up to 1050, so each lot holds
+    // trucks whose remaining capacities differ by up to 50; a load that leaves a truck below 50 strands it
+    private static ActionBuffer coarseLotActions(int actionCount) {
+        Random random = new Random(12);
+        ActionBuffer actions = new ActionBuffer();
+        for (int i = 1; i <= 20; i++) {
+            actions.add(Action.CREATE_PARKING_LOT);
+            actions.addOperand(i * 50L);
+            actions.addOperand(100_000);
+        }
+        long nextTruckId = 1;
+        while (actions.size() < actionCount) {
+            int kind = random.nextInt(100);
+            long capacityConstraint = (random.nextInt(20) + 1) * 50L;
+            if (kind < 20) {
+                actions.add(Action.ADD_TRUCK);
+                actions.addOperand(nextTruckId++);
+                actions.addOperand(50 + random.nextInt(1_000));
+            } else if (kind < 60) {
+                actions.add(Action.READY);
+                actions.addOperand(capacityConstraint);
+            } else {
+                actions.add(Action.LOAD);
+                actions.addOperand(capacityConstraint);
+                actions.addOperand(1 + random.nextInt(1_000));
+            }
+        }
+        return actions;
+    }
+
+    // compares the two-walk lookups Methods used to make with the single-pass floor of the AVL tree (finger)
+    // and with the cache in front of it, then whole runs with and without the cache, for uniform and Zipf workloads
+    private static void lookups(int lotCount, int actionCount) throws IOException {
+        System.out.printf("%-6s %-16s %12s%n", "skew", "lookup", "ns/lookup");
+        for (double skew : SKEWS) {
+            long[] keys = lookupKeys(new WorkloadGenerator(1, lotCount, 10, skew).generate(actionCount));
+            LotTable lotTable = new LotTable();
+            MyAvlTree tree = new MyAvlTree();
+            // every other candidate has a lot, so half of the lookups miss the exact constraint
+            for (int candidate = 0; candidate < lotCount; candidate += 2) {
+                tree.insertElement(new ParkingLot(lotTable, (candidate + 1) * 10L, 10));
+            }
+            LotIndex cached = new CachingLotIndex(tree);
+            String[] kinds = {"two walks", "finger", "finger + cache"};
+            for (int kind = 0; kind < kinds.length; kind++) {
+                long fastest = Long.MAX_VALUE;
+                long checksum = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    for (long key : keys) {
+                        ParkingLot parkingLot;
+                        if (kind == 0) {
+                            parkingLot = tree.searchElement(key);
+                            if (parkingLot == null) {
+                                parkingLot = tree.findHighestSmallerElement(key);
+                            }
+                        } else if (kind == 1) {
+                            parkingLot = tree.findFloorElement(key);
+                        } else {
+                            parkingLot = cached.findFloorElement(key);
+                        }
+                        checksum += parkingLot != null ? 1 : 0;
+                    }
+                    fastest = Math.min(fastest, System.nanoTime() - start);
+                }
+                System.out.printf("%-6.2f %-16s %12.1f%n", skew, kinds[kind], (double) fastest / keys.length);
+                if (checksum == 42) {
+                    System.out.println(); // keeps the JIT from removing the lookups
+                }
+            }
+        }
+        // whole runs use fewer lots, with many lots the linear count of the AVL tree takes most of the time
+        final int runLots = 2_000;
+        System.out.printf("%n%-6s %-12s %12s%n", "skew", "index", "ns/action");
+        for (double skew : SKEWS) {
+            ActionBuffer actions = new WorkloadGenerator(1, runLots, 10, skew).generate(actionCount);
+            for (String indexName : new String[]{"avl", "cached:avl", "flat", "cached:flat"}) {
+                long fastest = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), indexName, new ResultSummary());
+                    long start = System.nanoTime();
+                    simulator.execute(actions);
+                    fastest = Math.min(fastest, System.nanoTime() - start);
+                    simulator.close();
+                }
+                System.out.printf("%-6.2f %-12s %12.1f%n", skew, indexName, (double) fastest / actions.size());
+            }
+        }
+    }
+
+    // the lookups of a run: the constraints of the ready, load and add truck actions, in stream order
+    private static long[] lookupKeys(ActionBuffer actions) {
+        long[] keys = new long[actions.size()];
+        int keyCount = 0;
+        for (int i = 0; i < actions.size(); i++) {
+            int opcode = actions.opcode(i);
+            int offset = actions.operandOffset(i);
+            if (opcode == Action.READY || opcode == Action.LOAD) {
+                keys[keyCount++] = actions.operands()[offset];
+            } else if (opcode == Action.ADD_TRUCK) {
+                keys[keyCount++] = actions.operands()[offset + 1];
+            }
+        }
+        return Arrays.copyOf(keys, keyCount);
+    }
+
+    // decodes a generated input file line by line as Main does and with ParallelActionReader, alone and together
+    // with execution, the parallel decoding only scales up to the number of processors
+    private static void decode(int actionCount) throws IOException {
+        File file = File.createTempFile("actions-", ".txt");
+        file.deleteOnExit();
+        writeActions(new WorkloadGenerator(1, 2_000, 20).generate(actionCount), file);
+        double megabytes = file.length() / 1e6;
+        System.out.printf("%d actions, %.0f MB, %d processors%n", actionCount, megabytes,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-22s %10s %10s%n", "decoder", "MB/s", "run ms");
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ActionBuffer actions = new ActionBuffer();
+            try (Scanner input = new Scanner(file)) {
+                while (input.hasNextLine()) {
+                    actions.addLine(input.nextLine());
+                }
+            }
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        long run = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), new ResultSummary());
+            long start = System.nanoTime();
+            try (Scanner input = new Scanner(file)) {
+                while (input.hasNextLine()) {
+                    simulator.execute(input.nextLine());
+                }
+            }
+            run = Math.min(run, System.nanoTime() - start);
+        }
+        System.out.printf("%-22s %10.1f %10d%n", "scanner", megabytes * 1e9 / fastest, run / 1_000_000);
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            fastest = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                long decoded = 0;
+                try (ParallelActionReader reader = new ParallelActionReader(file, threads, ParallelActionReader.DEFAULT_CHUNK_SIZE)) {
+                    for (ActionBuffer chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                        decoded += chunk.size();
+                    }
+                }
+                fastest = Math.min(fastest, System.nanoTime() - start);
+                if (decoded != actionCount) {
+                    throw new IllegalStateException("decoded " + decoded + " of " + actionCount + " actions");
+                }
+            }
+            run = Long.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), new ResultSummary());
+                long start = System.nanoTime();
+                try (ParallelActionReader reader = new ParallelActionReader(file, threads, ParallelActionReader.DEFAULT_CHUNK_SIZE)) {
+                    for (ActionBuffer chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                        simulator.execute(chunk);
+                    }
+                }
+                run = Math.min(run, System.nanoTime() - start);
+            }
+            System.out.printf("%-22s %10.1f %10d%n", "parallel, " + threads + " threads", megabytes * 1e9 / fastest,
+                    run / 1_000_000);
+        }
+    }
+
+    // writes actions as the lines of an input file
+    private static void writeActions(ActionBuffer actions, File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < actions.size(); i++) {
+                writer.write(Action.name(actions.opcode(i)));
+                for (int j = 0; j < actions.operandCount(i); j++) {
+                    writer.write(' ');
+                    writer.write(Long.toString(actions.operands()[actions.operandOffset(i) + j]));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    // a dispatcher workload: a lot is created, a run of trucks is added to it and made ready, and the lot is deleted,
+    // among lots that never get trucks; written once with single actions and once with bulk actions
+    private static void bulk(int lotCount) throws IOException {
+        final int steps = 20_000;
+        System.out.printf("%-8s %14s %14s%n", "run", "single ns/op", "bulk ns/op");
+        for (int run = 1; run <= 256; run *= 4) {
+            ActionBuffer single = new ActionBuffer();
+            ActionBuffer bulk = new ActionBuffer();
+            for (ActionBuffer actions : new ActionBuffer[]{single, bulk}) {
+                for (int i = 0; i < lotCount; i++) {
+                    actions.add(Action.CREATE_PARKING_LOT);
+                    actions.addOperand(i * 10L + 5); // between the capacities used by the runs
+                    actions.addOperand(1);
+                }
+            }
+            Random random = new Random(run);
+            long truckId = 1;
+            for (int step = 0; step < steps; step++) {
+                long capacity = (random.nextInt(lotCount) + 1) * 10L;
+                for (ActionBuffer actions : new ActionBuffer[]{single, bulk}) {
+                    actions.add(Action.CREATE_PARKING_LOT);
+                    actions.addOperand(capacity);
+                    actions.addOperand(run);
+                }
+                bulk.add(Action.ADD_TRUCKS);
+                bulk.addOperand(capacity);
+                for (int i = 0; i < run; i++) {
+                    single.add(Action.ADD_TRUCK);
+                    single.addOperand(truckId + i);
+                    single.addOperand(capacity);
+                    bulk.addOperand(truckId + i);
+                }
+                truckId += run;
+                for (int i = 0; i < run; i++) {
+                    single.add(Action.READY);
+                    single.addOperand(capacity);
+                }
+                bulk.add(Action.READY_N);
+                bulk.addOperand(capacity);
+                bulk.addOperand(run);
+                for (ActionBuffer actions : new ActionBuffer[]{single, bulk}) {
+                    actions.add(Action.DELETE_PARKING_LOT);
+                    actions.addOperand(capacity);
+                }
+            }
+            long actionCount = lotCount + (long) steps * (2 + 2 * run);
+            double[] nanos = new double[2];
+            for (int variant = 0; variant < 2; variant++) {
+                long fastest = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    ResultSummary summary = new ResultSummary();
+                    Simulator simulator = new Simulator(PlacementPolicies.forName("best-fit"), summary);
+                    long start = System.nanoTime();
+                    simulator.execute(variant == 0 ? single : bulk);
+                    fastest = Math.min(fastest, System.nanoTime() - start);
+                    if (summary.actions() != actionCount || summary.failures(Action.ADD_TRUCK) != 0) {
+                        throw new IllegalStateException("the runs did not give the same results");
+                    }
+                }
+                nanos[variant] = (double) fastest / actionCount;
+            }
+            System.out.printf("%-8d %14.1f %14.1f%n", run, nanos[0], nanos[1]);
+        }
+    }
+
+    // fills a mapped index far beyond the heap and measures insertions, lookups and counts on random keys
+    private static void mapped(int lotCount) throws IOException {
+        final int operations = 1_000_000;
+        // all entries share one row of the table, so the heap holds only the page cache and not a row per lot
+        LotTable lotTable = new LotTable();
+        int handle = new ParkingLot(lotTable, 0, 1).getHandle();
+        Random random = new Random(lotCount);
+        try (MappedLotIndex index = new MappedLotIndex(lotTable)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < lotCount; i++) {
+                index.insert(mappedKey(i), handle, random.nextInt(8));
+            }
+            long inserting = System.nanoTime() - start;
+            long fileSize = (long) index.pageCount() * MappedLotIndex.PAGE_SIZE;
+            System.out.printf("%d lots, index file %d MB, max heap %d MB, page cache %d KB%n", lotCount, fileSize >> 20,
+                    Runtime.getRuntime().maxMemory() >> 20, MappedLotIndex.DEFAULT_CACHE_PAGES * MappedLotIndex.PAGE_SIZE >> 10);
+            System.out.printf("%-28s %10.1f%n", "insert (ns/op)", (double) inserting / lotCount);
+            long[] keys = new long[operations];
+            for (int i = 0; i < operations; i++) {
+                keys[i] = mappedKey(random.nextInt(lotCount));
+            }
+            long checksum = 0;
+            for (int round = 0; round < 2; round++) {
+                start = System.nanoTime();
+                for (long key : keys) {
+                    checksum += index.searchElement(key) != null ? 1 : 0;
+                }
+                long searching = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (long key : keys) {
+                    // between two keys, so both neighbours come from the leaf chain or the same leaf
+                    checksum += index.findHighestSmallerElement(key + 1) != null ? 1 : 0;
+                    checksum += index.findLeastBiggerElement(key + 1) != null ? 1 : 0;
+                }
+                long neighbours = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (long key : keys) {
+                    checksum += index.countTrucksInLargerLots(key);
+                }
+                long counting = System.nanoTime() - start;
+                if (round == 1) {
+                    System.out.printf("%-28s %10.1f%n", "exact search (ns/op)", (double) searching / operations);
+                    System.out.printf("%-28s %10.1f%n", "floor + ceiling (ns/pair)", (double) neighbours / operations);
+                    System.out.printf("%-28s %10.1f%n", "count above (ns/op)", (double) counting / operations);
+                }
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                index.deleteElement(keys[i]);
+            }
+            System.out.printf("%-28s %10.1f%n", "delete (ns/op)", (double) (System.nanoTime() - start) / operations);
+            if (checksum == 42) {
+                System.out.println(); // keeps the JIT from removing the lookups
+            }
+        }
+    }
+
+    // distinct keys in scattered order, so insertions land all over the tree
+    private static long mappedKey(int i) {
+        return Integer.reverse(i) & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * BinaryResultReader gives access to the records of a file written by BinaryResultWriter.
+ * The file is mapped read-only and records are decoded from the mapping into the fields of the reader, one at a
+ * time, so no records are copied into objects. Reading the records in order decodes each of them once; any other
+ * record is found through the block index of the file by decoding from the start of its block, which takes at most
+ * BLOCK_RECORDS records. A reader must not be used by more than one thread at a time.
+ */
+public class BinaryResultReader implements AutoCloseable {
+    private static final long SEGMENT_SIZE = 1L << 30;  // 1 GB per mapped segment
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;  // the file is mapped in segments since a mapping is limited to 2 GB
+    private final long recordCount;
+    private final long indexOffset;             // file offset of the block index
+    private final int blockRecords;
+
+    // the record decoded last, and where the one after it starts
+    private long record = -1;
+    private long actionIndex;
+    private int opcode;
+    private long truckId;
+    private long value;
+    private long next = BinaryResultWriter.HEADER_SIZE;  // file offset of the next record
+    private final long[] previousTrucks = new long[BinaryResultWriter.OPCODE_MASK + 1];  // as in the writer
+    private MappedByteBuffer segment;           // segment and position of the record being decoded
+    private int position;
+
+    /**
+     * Maps the given file and checks its header.
+     *
+     * @param path Path of a binary output file
+     * @throws IOException If the file cannot be read or is not a binary result file
+     */
+    public BinaryResultReader(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+        int segmentCount = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[Math.max(segmentCount, 1)];
+        for (int i = 0; i < segmentCount; i++) {
+            // segments overlap by the size of a record, so every record lies in the segment where it starts
+            long start = i * SEGMENT_SIZE;
+            long size = Math.min(SEGMENT_SIZE + BinaryResultWriter.MAX_RECORD_SIZE, length - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (length < BinaryResultWriter.HEADER_SIZE
+                || segments[0].getInt(0) != BinaryResultWriter.MAGIC
+                || segments[0].getInt(4) != BinaryResultWriter.VERSION) {
+            file.close();
+            throw new IOException(path + " is not a binary result file");
+        }
+        blockRecords = segments[0].getInt(8);
+        recordCount = segments[0].getLong(16);
+        indexOffset = segments[0].getLong(24);
+    }
+
+    /**
+     * @return The number of records in the file
+     */
+    public long size() {
+        return recordCount;
+    }
+
+    /**
+     * @param record Index of the record, starting from 0
+     * @return The index of the action that produced the record
+     */
+    public long actionIndex(long record) {
+        decode(record);
+        return actionIndex;
+    }
+
+    /**
+     * @param record Index of the record, starting from 0
+     * @return The opcode of the action that produced the record
+     */
+    public int opcode(long record) {
+        decode(record);
+        return opcode;
+    }
+
+    /**
+     * @param record Index of the record, starting from 0
+     * @return The truck id of the record, or ResultSink.NO_TRUCK if it does not concern a truck
+     */
+    public long truckId(long record) {
+        decode(record);
+        return truckId;
+    }
+
+    /**
+     * @param record Index of the record, starting from 0
+     * @return The capacity constraint of the parking lot used, the count, or -1 if the action failed
+     */
+    public long value(long record) {
+        decode(record);
+        return value;
+    }
+
+    // decodes the given record into the fields, going on from the current one if it is in the same block
+    private void decode(long target) {
+        if (target < 0 || target >= recordCount) {
+            throw new IndexOutOfBoundsException("record " + target + " of " + recordCount);
+        }
+        if (target == record) {
+            return;
+        }
+        if (target < record || target / blockRecords != (record + 1) / blockRecords) {
+            long block = target / blockRecords;
+            next = getLong(indexOffset + block * 16);
+            actionIndex = getLong(indexOffset + block * 16 + 8);
+            record = block * blockRecords - 1;
+        }
+        while (record < target) {
+            if ((record + 1) % blockRecords == 0) {
+                Arrays.fill(previousTrucks, 0);
+            }
+            decodeNext();
+        }
+    }
+
+    private void decodeNext() {
+        segment = segments[(int) (next / SEGMENT_SIZE)];
+        int start = (int) (next % SEGMENT_SIZE);
+        position = start;
+        int first = segment.get(position++) & 0xFF;
+        opcode = first & BinaryResultWriter.OPCODE_MASK;
+        long distance = first >>> BinaryResultWriter.DISTANCE_SHIFT;
+        if (distance == BinaryResultWriter.LONG_DISTANCE) {
+            distance += readNumber();
+        }
+        actionIndex += distance;
+        truckId = ResultSink.NO_TRUCK;
+        if ((first & BinaryResultWriter.TRUCK_FLAG) != 0) {
+            truckId = previousTrucks[opcode] + zigzag(readNumber());
+            previousTrucks[opcode] = truckId;
+        }
+        value = (first & BinaryResultWriter.FAILED_FLAG) == 0 ? zigzag(readNumber()) : ResultSink.FAILED;
+        next += position - start;
+        record++;
+    }
+
+    // reads an unsigned number of 7 bits per byte, low bits first, at position
+    private long readNumber() {
+        long bits = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = segment.get(position++);
+            bits |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return bits;
+            }
+        }
+    }
+
+    private static long zigzag(long bits) {
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private long getLong(long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)].getLong((int) (offset % SEGMENT_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * BinaryResultWriter writes the results as compact binary records into a memory-mapped file.
+ * The file starts with a little-endian header of HEADER_SIZE bytes:
+ * <pre>
+ *   offset 0   int   MAGIC
+ *   offset 4   int   VERSION
+ *   offset 8   int   BLOCK_RECORDS, the number of records per block of the block index
+ *   offset 12  int   0
+ *   offset 16  long  number of records
+ *   offset 24  long  file offset of the block index
+ * </pre>
+ * followed by one record per result. A record starts with a byte holding the opcode of the action (see Action)
+ * in bits 0-2, TRUCK_FLAG if the result concerns a truck, FAILED_FLAG if the action failed, and in bits 5-7 the
+ * distance of its action index from the action index of the record before it (from 0 for the first record), or 7
+ * if the distance is 7 or more. The byte is followed by variable-length numbers of 7 bits per byte, low bits first:
+ * the distance minus 7 if it did not fit, if there is a truck the zigzag encoded difference of its id from the truck
+ * id of the previous record with the same opcode in the block (from 0 for the first one), and unless the action failed
+ * the zigzag encoded capacity constraint of the parking lot used or the count. Trucks added in the order of their ids
+ * and trucks loaded in the order they were added differ little from the previous one, so most records take 3 to 5
+ * bytes against about 8 for their text.
+ * <p>
+ * The block index after the records holds, for every BLOCK_RECORDS records, the file offset of the first record of
+ * the block and the action index its distance is counted from, as two little-endian longs, so readers can start
+ * decoding at any block. The file is mapped in chunks of CHUNK_SIZE bytes; a new chunk is mapped from the current
+ * position whenever fewer than MAX_RECORD_SIZE bytes are left. Closing the writer writes the block index and the
+ * header through the mappings, releases them and only then trims the file to the records and the block index.
+ * Readers go by the header rather than the file length, so a file that could not be trimmed is still valid.
+ */
+public class BinaryResultWriter implements ResultSink {
+    static final int MAGIC = 0x524B5254;          // "TRKR" in little-endian byte order
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_RECORDS = 1024;
+    static final int MAX_RECORD_SIZE = 31;        // the first byte and three numbers of at most 10 bytes
+    static final int OPCODE_MASK = 0x07;
+    static final int TRUCK_FLAG = 0x08;
+    static final int FAILED_FLAG = 0x10;
+    static final int DISTANCE_SHIFT = 5;
+    static final int LONG_DISTANCE = 7;           // distance field of records whose distance follows as a number
+    static final long CHUNK_SIZE = 48L << 20;     // size of each mapped chunk
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer chunk;   // currently mapped part of the file
+    private long chunkStart;          // file offset where the current chunk starts
+    private long recordCount;         // number of records written so far
+    private long actionIndex;         // index of the action whose records are being written
+    private long previousIndex;       // action index of the last record written
+    private final long[] previousTrucks = new long[OPCODE_MASK + 1];  // truck id of the last record of each opcode
+    private long[] blockIndex = new long[64];  // file offset and base action index of every block
+
+    /**
+     * Creates the output file (truncating it if it exists) and maps its first chunk.
+     *
+     * @param path Path of the binary output file
+     * @throws IOException If the file cannot be created or mapped
+     */
+    public BinaryResultWriter(String path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        mapChunk(0);
+        chunk.position(HEADER_SIZE); // the header is written when the writer is closed
+    }
+
+    // maps CHUNK_SIZE bytes starting from the given offset, which grows the file if needed
+    private void mapChunk(long start) throws IOException {
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, CHUNK_SIZE);
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        chunkStart = start;
+    }
+
+    @Override
+    public void beginAction(long actionIndex) {
+        this.actionIndex = actionIndex;
+    }
+
+    @Override
+    public void record(int opcode, long truckId, long value) throws IOException {
+        if (opcode < 0 || opcode > OPCODE_MASK) {
+            throw new IllegalArgumentException("opcode " + opcode + " does not fit in a binary record");
+        }
+        // records never cross chunks since a new chunk starts where the room for a record ends
+        if (chunk.remaining() < MAX_RECORD_SIZE) {
+            mapChunk(chunkStart + chunk.position());
+        }
+        if (recordCount % BLOCK_RECORDS == 0) {
+            int block = (int) (recordCount / BLOCK_RECORDS);
+            if (2 * block + 2 > blockIndex.length) {
+                blockIndex = Arrays.copyOf(blockIndex, blockIndex.length * 2);
+            }
+            blockIndex[2 * block] = chunkStart + chunk.position();
+            blockIndex[2 * block + 1] = previousIndex;
+            Arrays.fill(previousTrucks, 0);
+        }
+        long distance = actionIndex - previousIndex;
+        int first = opcode | (int) Math.min(distance, LONG_DISTANCE) << DISTANCE_SHIFT;
+        if (truckId != NO_TRUCK) {
+            first |= TRUCK_FLAG;
+        }
+        if (value == FAILED) {
+            first |= FAILED_FLAG;
+        }
+        chunk.put((byte) first);
+        if (distance >= LONG_DISTANCE) {
+            putNumber(distance - LONG_DISTANCE);
+        }
+        if (truckId != NO_TRUCK) {
+            long difference = truckId - previousTrucks[opcode];
+            putNumber((difference << 1) ^ (difference >> 63));
+            previousTrucks[opcode] = truckId;
+        }
+        if (value != FAILED) {
+            putNumber((value << 1) ^ (value >> 63));
+        }
+        previousIndex = actionIndex;
+        recordCount++;
+    }
+
+    // writes an unsigned number in 7 bits per byte, low bits first
+    private void putNumber(long bits) {
+        while ((bits & ~0x7FL) != 0) {
+            chunk.put((byte) ((bits & 0x7F) | 0x80));
+            bits >>>= 7;
+        }
+        chunk.put((byte) bits);
+    }
+
+    @Override
+    public void endLine() {
+        // lines are not stored, records of the same line share their action index
+    }
+
+    /**
+     * Writes the block index and the header, trims the file and closes it.
+     *
+     * @throws IOException If an I/O error occurs while finishing the file
+     */
+    @Override
+    public void close() throws IOException {
+        long end = chunkStart + chunk.position();
+        int blockCount = (int) ((recordCount + BLOCK_RECORDS - 1) / BLOCK_RECORDS);
+        for (int i = 0; i < 2 * blockCount; i++) {
+            if (chunk.remaining() < Long.BYTES) {
+                mapChunk(chunkStart + chunk.position());
+            }
+            chunk.putLong(blockIndex[i]);
+        }
+        long length = chunkStart + chunk.position();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(BLOCK_RECORDS).putInt(0).putLong(recordCount).putLong(end);
+        header.force();
+        chunk.force();
+        // a mapping is released when it is collected, and some systems refuse to shrink a file that is still mapped
+        header = null;
+        chunk = null;
+        try {
+            channel.truncate(length);
+        } catch (IOException e) {
+            System.gc();
+            try {
+                channel.truncate(length);
+            } catch (IOException stillMapped) {
+                // the file keeps the unused end of its last chunk, which readers skip
+            }
+        }
+        file.close();
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * CachingLotIndex puts a small direct-mapped cache of floor and ceiling results in front of another index.
+ * Action streams ask about the same capacity constraints again and again, and a hit answers with one
+ * array lookup instead of a walk of the index. Each capacity constraint has one slot, chosen by a hash,
+ * and a newer constraint simply replaces the older one in the slot. Insertions and deletions start a new
+ * generation, which invalidates every slot at once; changes of the trucks keep the cached lots valid.
+ */
+public class CachingLotIndex implements LotIndex {
+    private static final int SLOTS = 1024;            // a power of two
+    private static final int SLOT_SHIFT = 64 - 10;    // takes the top log2(SLOTS) bits of the hash
+    private static final byte FLOOR_KNOWN = 1;
+    private static final byte CEILING_KNOWN = 2;
+
+    private final LotIndex index;  // the index whose results are cached
+    private final long[] keys = new long[SLOTS];               // capacity constraint of each slot
+    private final int[] generations = new int[SLOTS];          // generation each slot was filled in, 0 if never
+    private final byte[] known = new byte[SLOTS];              // which of the two results each slot holds
+    private final ParkingLot[] floors = new ParkingLot[SLOTS];
+    private final ParkingLot[] ceilings = new ParkingLot[SLOTS];
+    private int generation = 1;
+
+    /**
+     * @param index The index whose lookups are cached
+     */
+    public CachingLotIndex(LotIndex index) {
+        this.index = index;
+    }
+
+    // slot of a capacity constraint, Fibonacci hashing spreads constraints that are multiples of each other
+    private static int slot(long capacityConstraint) {
+        return (int) ((capacityConstraint * 0x9E3779B97F4A7C15L) >>> SLOT_SHIFT);
+    }
+
+    // returns the slot of the capacity constraint after making sure it belongs to it in this generation
+    private int claim(long capacityConstraint) {
+        int slot = slot(capacityConstraint);
+        if (generations[slot] != generation || keys[slot] != capacityConstraint) {
+            keys[slot] = capacityConstraint;
+            generations[slot] = generation;
+            known[slot] = 0;
+            floors[slot] = null;
+            ceilings[slot] = null;
+        }
+        return slot;
+    }
+
+    private void invalidate() {
+        if (++generation == 0) {
+            // after 2^32 changes a stale slot could match again, so every slot is cleared instead
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        index.insertElement(element);
+        invalidate();
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        index.deleteElement(capacityConstraint);
+        invalidate();
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        int slot = claim(capacityConstraint);
+        if ((known[slot] & FLOOR_KNOWN) == 0) {
+            floors[slot] = index.findFloorElement(capacityConstraint);
+            known[slot] |= FLOOR_KNOWN;
+        }
+        return floors[slot];
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        int slot = claim(capacityConstraint);
+        if ((known[slot] & CEILING_KNOWN) == 0) {
+            ceilings[slot] = index.findCeilingElement(capacityConstraint);
+            known[slot] |= CEILING_KNOWN;
+        }
+        return ceilings[slot];
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        ParkingLot parkingLot = findFloorElement(capacityConstraint);
+        return parkingLot != null && parkingLot.getCapacityConstraint() == capacityConstraint ? parkingLot : null;
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        return index.findHighestSmallerElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        return index.findLeastBiggerElement(capacityConstraint);
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        return index.countTrucksInLargerLots(capacityConstraint);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        index.forEachElement(action);
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return index.cachesOccupancy();
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        index.refresh(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        return index.findBestLot(low, high, scoring);
+    }
+
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        return index.findFirstAvailableLot(low, high);
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * CountingLotIndex passes every call on to another index and counts them, so benchmarks can compare
+ * how many index operations different modes of the simulator need for the same work. Insertions, deletions
+ * and refreshes count as updates; searches, floor and ceiling lookups, counts and range queries count as
+ * lookups. Visiting every lot counts as neither.
+ */
+public class CountingLotIndex implements LotIndex {
+    private final LotIndex index;  // the index whose calls are counted
+    private long updates;
+    private long lookups;
+
+    /**
+     * @param index The index whose calls are counted
+     */
+    public CountingLotIndex(LotIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return The number of insertions, deletions and refreshes so far
+     */
+    long updates() {
+        return updates;
+    }
+
+    /**
+     * @return The number of lookups, counts and range queries so far
+     */
+    long lookups() {
+        return lookups;
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        updates++;
+        index.insertElement(element);
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        updates++;
+        index.deleteElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        lookups++;
+        return index.searchElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        lookups++;
+        return index.findHighestSmallerElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        lookups++;
+        return index.findLeastBiggerElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        lookups++;
+        return index.findFloorElement(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        lookups++;
+        return index.findCeilingElement(capacityConstraint);
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        lookups++;
+        return index.countTrucksInLargerLots(capacityConstraint);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        index.forEachElement(action);
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return index.cachesOccupancy();
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        updates++;
+        index.refresh(capacityConstraint);
+    }
+
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        lookups++;
+        return index.findBestLot(low, high, scoring);
+    }
+
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        lookups++;
+        return index.findFirstAvailableLot(low, high);
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+}
@@ -0,0 +1,282 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * FlatLotIndex keeps the lots in a sorted array of capacity constraints with parallel arrays of the lots
+ * and of their truck numbers. Lookups are binary searches whose loop has no data-dependent branch,
+ * and counting sums a contiguous range of the truck number array, which the JIT compiles to vector additions.
+ * Insertions and deletions shift the arrays, so the index suits small and medium numbers of lots
+ * (AdaptiveLotIndex moves to an AVL tree above a threshold).
+ * For findBestLot() and findFirstAvailableLot() every block of BLOCK_SIZE slots has a summary of the most free
+ * slots and the fewest trucks of its lots, so a range is searched in O(range / BLOCK_SIZE + BLOCK_SIZE). Summaries
+ * are built by the first search that needs them; a change of lots only marks the summaries of its block and the
+ * ones after it as stale, as it shifts their lots, and a change of trucks updates the summary of its block.
+ */
+public class FlatLotIndex implements LotIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;          // slots summarized together for findBestLot()
+
+    private long[] keys = new long[INITIAL_CAPACITY];                // capacity constraints in increasing order
+    private ParkingLot[] lots = new ParkingLot[INITIAL_CAPACITY];    // lot of each capacity constraint
+    private long[] truckNumbers = new long[INITIAL_CAPACITY];        // number of trucks in each lot
+    private int size;                                                // number of lots
+    private long[] maxFreeSlots = new long[1];       // most free slots among the lots of each block
+    private long[] minTruckNumbers = new long[1];    // fewest trucks among the available lots of each block
+    private int summarizedBlocks;                    // number of leading blocks whose summaries are up to date
+
+    // index of the first key that is not less than the given one, or size if there is none
+    private int lowerBound(long key) {
+        int base = 0;
+        int length = size;
+        if (length == 0) {
+            return 0;
+        }
+        // halve the range without branching on the comparison, the ternary becomes a conditional move
+        while (length > 1) {
+            int half = length >>> 1;
+            base = keys[base + half - 1] < key ? base + half : base;
+            length -= half;
+        }
+        return keys[base] < key ? base + 1 : base;
+    }
+
+    // index of the first key greater than the given one, or size if there is none
+    private int upperBound(long key) {
+        int base = 0;
+        int length = size;
+        if (length == 0) {
+            return 0;
+        }
+        while (length > 1) {
+            int half = length >>> 1;
+            base = keys[base + half - 1] <= key ? base + half : base;
+            length -= half;
+        }
+        return keys[base] <= key ? base + 1 : base;
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        long key = element.getCapacityConstraint();
+        int index = lowerBound(key);
+        if (index < size && keys[index] == key) {
+            return; // the lot is already in the index
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            lots = Arrays.copyOf(lots, size * 2);
+            truckNumbers = Arrays.copyOf(truckNumbers, size * 2);
+        }
+        summarizedBlocks = Math.min(summarizedBlocks, index >> BLOCK_SHIFT);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(lots, index, lots, index + 1, size - index);
+        System.arraycopy(truckNumbers, index, truckNumbers, index + 1, size - index);
+        keys[index] = key;
+        lots[index] = element;
+        truckNumbers[index] = element.getTruckNumberInWaiting() + element.getTruckNumberInReady();
+        size++;
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        int index = lowerBound(capacityConstraint);
+        if (index == size || keys[index] != capacityConstraint) {
+            return; // there is no such lot
+        }
+        summarizedBlocks = Math.min(summarizedBlocks, index >> BLOCK_SHIFT);
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(lots, index + 1, lots, index, size - index - 1);
+        System.arraycopy(truckNumbers, index + 1, truckNumbers, index, size - index - 1);
+        lots[--size] = null;
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        int index = lowerBound(capacityConstraint);
+        return index < size && keys[index] == capacityConstraint ? lots[index] : null;
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        int index = lowerBound(capacityConstraint) - 1;
+        return index >= 0 ? lots[index] : null;
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        int index = upperBound(capacityConstraint);
+        return index < size ? lots[index] : null;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        int index = upperBound(capacityConstraint) - 1;
+        return index >= 0 ? lots[index] : null;
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        int index = lowerBound(capacityConstraint);
+        return index < size ? lots[index] : null;
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        long total = 0;
+        // a plain loop over a primitive array, which C2 turns into a vectorized sum
+        for (int i = upperBound(capacityConstraint); i < size; i++) {
+            total += truckNumbers[i];
+        }
+        return total;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(lots[i]);
+        }
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return true;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        int index = lowerBound(capacityConstraint);
+        if (index < size && keys[index] == capacityConstraint) {
+            long oldTruckNumber = truckNumbers[index];
+            truckNumbers[index] = lots[index].getTruckNumberInWaiting() + lots[index].getTruckNumberInReady();
+            int block = index >> BLOCK_SHIFT;
+            if (block < summarizedBlocks) {
+                long freeSlots = lots[index].getFreeSlots();
+                long oldFreeSlots = freeSlots + truckNumbers[index] - oldTruckNumber;
+                long truckNumber = freeSlots > 0 ? truckNumbers[index] : Long.MAX_VALUE;
+                long oldLoad = oldFreeSlots > 0 ? oldTruckNumber : Long.MAX_VALUE;
+                // the summary is rebuilt only when the lot was the best of its block and got worse
+                if ((freeSlots < oldFreeSlots && oldFreeSlots == maxFreeSlots[block])
+                        || (truckNumber > oldLoad && oldLoad == minTruckNumbers[block])) {
+                    summarize(block);
+                } else {
+                    maxFreeSlots[block] = Math.max(maxFreeSlots[block], freeSlots);
+                    minTruckNumbers[block] = Math.min(minTruckNumbers[block], truckNumber);
+                }
+            }
+        }
+    }
+
+    // recomputes the summary of a block from its lots
+    private void summarize(int block) {
+        long maxFree = Long.MIN_VALUE;
+        long minTrucks = Long.MAX_VALUE;
+        for (int i = block << BLOCK_SHIFT; i < Math.min(size, (block + 1) << BLOCK_SHIFT); i++) {
+            long freeSlots = lots[i].getFreeSlots();
+            maxFree = Math.max(maxFree, freeSlots);
+            if (freeSlots > 0) {
+                minTrucks = Math.min(minTrucks, truckNumbers[i]);
+            }
+        }
+        maxFreeSlots[block] = maxFree;
+        minTruckNumbers[block] = minTrucks;
+    }
+
+    // brings the summaries of the blocks up to the given one up to date
+    private void summarizeThrough(int lastBlock) {
+        if (summarizedBlocks <= lastBlock) {
+            if (maxFreeSlots.length <= lastBlock) {
+                maxFreeSlots = Arrays.copyOf(maxFreeSlots, (keys.length >> BLOCK_SHIFT) + 1);
+                minTruckNumbers = Arrays.copyOf(minTruckNumbers, maxFreeSlots.length);
+            }
+            for (int block = summarizedBlocks; block <= lastBlock; block++) {
+                summarize(block);
+            }
+            summarizedBlocks = lastBlock + 1;
+        }
+    }
+
+    // score of the lot in a slot, a higher score is better
+    private long score(int i, int scoring) {
+        if (scoring == FREE_SLOTS) {
+            return lots[i].getFreeSlots();
+        }
+        return lots[i].getAvailability() ? -truckNumbers[i] : -Long.MAX_VALUE;
+    }
+
+    // best score of the lots in a block
+    private long bestScore(int block, int scoring) {
+        return scoring == FREE_SLOTS ? maxFreeSlots[block] : -minTruckNumbers[block];
+    }
+
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        int first = lowerBound(low);
+        int last = upperBound(high) - 1;
+        if (first > last) {
+            return null;
+        }
+        int firstBlock = first >> BLOCK_SHIFT;
+        int lastBlock = last >> BLOCK_SHIFT;
+        summarizeThrough(lastBlock);
+
+        // the best score in the range, from the lots of the partial blocks at both ends and the summaries between
+        long target = -Long.MAX_VALUE;
+        for (int i = last; i >= first && i >= lastBlock << BLOCK_SHIFT; i--) {
+            target = Math.max(target, score(i, scoring));
+        }
+        for (int block = lastBlock - 1; block > firstBlock; block--) {
+            target = Math.max(target, bestScore(block, scoring));
+        }
+        if (firstBlock < lastBlock) {
+            for (int i = first; i < (firstBlock + 1) << BLOCK_SHIFT; i++) {
+                target = Math.max(target, score(i, scoring));
+            }
+        }
+        if (target == -Long.MAX_VALUE || (scoring == FREE_SLOTS && target <= 0)) {
+            return null; // no lot in the range can take a truck
+        }
+
+        // the lot with the largest capacity constraint that reaches it, skipping the blocks that do not
+        for (int i = last; i >= first; i--) {
+            int block = i >> BLOCK_SHIFT;
+            if (block > firstBlock && block < lastBlock && bestScore(block, scoring) < target) {
+                i = block << BLOCK_SHIFT;  // continues below the block
+            } else if (score(i, scoring) >= target) {
+                return lots[i];
+            }
+        }
+        return null;
+    }
+
+    // the first lot in the range with free slots, skipping the whole blocks whose summaries have none
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        int first = lowerBound(low);
+        int last = upperBound(high) - 1;
+        if (first > last) {
+            return null;
+        }
+        summarizeThrough(last >> BLOCK_SHIFT);
+        for (int i = first; i <= last; i++) {
+            if ((i & (BLOCK_SIZE - 1)) == 0 && maxFreeSlots[i >> BLOCK_SHIFT] <= 0) {
+                i += BLOCK_SIZE - 1;  // continues after the block
+            } else if (lots[i].getFreeSlots() > 0) {
+                return lots[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The lots in increasing order of capacity constraint, the array may be longer than size()
+     */
+    ParkingLot[] sortedElements() {
+        return lots;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * LatencyHistogram counts non-negative values (nanoseconds) in log-linear buckets: values below 128 have a bucket
+ * each, and every higher power-of-two range is split into 128 buckets, so a value is known within 1%.
+ * Recording is a few arithmetic instructions and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;  // buckets per power of two
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS];
+    private long totalCount;  // number of recorded values
+    private long max;         // largest recorded value
+
+    /**
+     * @param value The value to be counted, negative values are counted as 0
+     */
+    void record(long value) {
+        value = Math.max(value, 0);
+        counts[bucketOf(value)]++;
+        totalCount++;
+        max = Math.max(max, value);
+    }
+
+    // bucket of a value: the power of two above SUB_BUCKETS selects the range, the top bits the bucket in it
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // largest value that falls into a bucket
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, e.g. 99.9
+     * @return The smallest recorded value that the given percentage of values does not exceed, within 1%
+     */
+    long percentile(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return The largest recorded value
+     */
+    long max() {
+        return max;
+    }
+
+    /**
+     * @return The number of recorded values
+     */
+    long count() {
+        return totalCount;
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator drives a Simulator open-loop: action i is due at start + i / rate, whether or not the previous
+ * actions have finished. The latency of an action is measured from the time it was due, not from the time it
+ * was actually started, so time spent waiting behind slow actions is counted (no coordinated omission).
+ * Every arrival rate runs a fresh simulator on the same actions and reports latency percentiles; once the
+ * simulator cannot keep up, the achieved rate falls behind the target and the latencies grow without bound.
+ * <pre>
+ *   java LoadGenerator [--input=file] [--actions=n] [--lots=n] [--rates=r1,r2,...] [--policy=name] [--index=name]
+ * </pre>
+ * Without an input file, a stream of n actions over the given number of lot candidates is generated.
+ */
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final long SPIN_NANOS = 50_000;  // waits shorter than this are spun, longer ones parked
+
+    public static void main(String[] args) throws IOException {
+        String input = null;
+        int actionCount = 500_000;
+        int lotCount = 2_000;
+        String rates = "25000,50000,100000,200000,400000,800000,1600000";
+        String policyName = "best-fit";
+        String indexName = "avl";
+        for (String arg : args) {
+            if (arg.startsWith("--input=")) {
+                input = arg.substring("--input=".length());
+            } else if (arg.startsWith("--actions=")) {
+                actionCount = Integer.parseInt(arg.substring("--actions=".length()));
+            } else if (arg.startsWith("--lots=")) {
+                lotCount = Integer.parseInt(arg.substring("--lots=".length()));
+            } else if (arg.startsWith("--rates=")) {
+                rates = arg.substring("--rates=".length());
+            } else if (arg.startsWith("--policy=")) {
+                policyName = arg.substring("--policy=".length());
+            } else if (arg.startsWith("--index=")) {
+                indexName = arg.substring("--index=".length());
+            }
+        }
+        ActionBuffer actions = input != null ? ActionBuffer.read(new File(input))
+                : new WorkloadGenerator(1, lotCount, 20).generate(actionCount);
+
+        // one unpaced pass lets the JIT compile the simulator before anything is measured
+        Simulator warmUp = new Simulator(PlacementPolicies.forName(policyName), indexName, new ResultSummary());
+        warmUp.execute(actions);
+        warmUp.close();
+
+        System.out.printf("%d actions, policy %s, index %s, latencies in microseconds%n",
+                actions.size(), policyName, indexName);
+        System.out.printf("%10s %10s %9s %9s %9s %9s %9s %10s%n",
+                "rate", "achieved", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        double lastSustained = 0;
+        for (String rate : rates.split(",")) {
+            double targetRate = Double.parseDouble(rate);
+            LatencyHistogram histogram = new LatencyHistogram();
+            Simulator simulator = new Simulator(PlacementPolicies.forName(policyName), indexName, new ResultSummary());
+            double achievedRate = run(simulator, actions, targetRate, histogram);
+            simulator.close();
+            System.out.printf("%10.0f %10.0f", targetRate, achievedRate);
+            for (double percentile : PERCENTILES) {
+                System.out.printf(" %9.1f", histogram.percentile(percentile) / 1e3);
+            }
+            System.out.printf(" %10.1f%n", histogram.max() / 1e3);
+            if (achievedRate < targetRate * 0.95) {
+                System.out.printf("saturated: the simulator sustains %.0f but not %.0f actions/s%n", lastSustained, targetRate);
+                break;
+            }
+            lastSustained = targetRate;
+        }
+    }
+
+    /**
+     * Executes every action at its scheduled time and records its latency from that time.
+     *
+     * @param simulator  The simulator that executes the actions
+     * @param actions    The actions to be executed
+     * @param rate       Arrival rate in actions per second
+     * @param histogram  Receives the latency of every action in nanoseconds
+     * @return The achieved rate in actions per second
+     * @throws IOException If the simulator fails to write a result
+     */
+    static double run(Simulator simulator, ActionBuffer actions, double rate, LatencyHistogram histogram) throws IOException {
+        double interval = 1e9 / rate;
+        long[] operands = actions.operands();
+        long start = System.nanoTime();
+        for (int i = 0; i < actions.size(); i++) {
+            long due = start + (long) (i * interval);
+            long wait = due - System.nanoTime();
+            if (wait > SPIN_NANOS) {
+                LockSupport.parkNanos(wait - SPIN_NANOS);
+            }
+            while (System.nanoTime() < due) {
+                Thread.onSpinWait();
+            }
+            simulator.execute(actions.opcode(i), operands, actions.operandOffset(i), actions.operandCount(i));
+            histogram.record(System.nanoTime() - due);
+        }
+        return actions.size() / ((System.nanoTime() - start) / 1e9);
+    }
+}
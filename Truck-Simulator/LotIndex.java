@@ -0,0 +1,165 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * LotIndex keeps parking lots ordered by their capacity constraints, which are unique within an index.
+ * Methods uses it for every lookup, so the data structure behind it can be replaced (see LotIndexes).
+ * An index is closed when it is no longer used.
+ */
+public interface LotIndex extends Closeable {
+    int FREE_SLOTS = 0;  // findBestLot() scores lots by their number of free slots, more is better
+    int LOAD = 1;        // findBestLot() scores lots by their number of trucks, fewer is better
+
+    /**
+     * Adds a lot, or does nothing if a lot with the same capacity constraint is already in the index.
+     *
+     * @param element The lot to be added
+     */
+    void insertElement(ParkingLot element);
+
+    /**
+     * Removes the lot with the given capacity constraint, if there is one.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     */
+    void deleteElement(long capacityConstraint);
+
+    /**
+     * @param capacityConstraint Capacity constraint of the lot
+     * @return The lot with exactly the given capacity constraint, or null
+     */
+    ParkingLot searchElement(long capacityConstraint);
+
+    /**
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The lot with the largest capacity constraint less than the given one, or null
+     */
+    ParkingLot findHighestSmallerElement(long capacityConstraint);
+
+    /**
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The lot with the smallest capacity constraint greater than the given one, or null
+     */
+    ParkingLot findLeastBiggerElement(long capacityConstraint);
+
+    /**
+     * Finds the lot with the given capacity constraint or else the nearest smaller one. This implementation
+     * makes two lookups, indexes override it with a single pass.
+     *
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The lot with the largest capacity constraint not greater than the given one, or null
+     */
+    default ParkingLot findFloorElement(long capacityConstraint) {
+        ParkingLot parkingLot = searchElement(capacityConstraint);
+        return parkingLot != null ? parkingLot : findHighestSmallerElement(capacityConstraint);
+    }
+
+    /**
+     * Finds the lot with the given capacity constraint or else the nearest larger one.
+     *
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The lot with the smallest capacity constraint not less than the given one, or null
+     */
+    default ParkingLot findCeilingElement(long capacityConstraint) {
+        ParkingLot parkingLot = searchElement(capacityConstraint);
+        return parkingLot != null ? parkingLot : findLeastBiggerElement(capacityConstraint);
+    }
+
+    /**
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The total number of trucks in the lots with a capacity constraint greater than the given one
+     */
+    long countTrucksInLargerLots(long capacityConstraint);
+
+    /**
+     * @return The number of lots in the index
+     */
+    int size();
+
+    /**
+     * Visits every lot in increasing order of capacity constraint.
+     *
+     * @param action Called with every lot
+     */
+    void forEachElement(Consumer<ParkingLot> action);
+
+    /**
+     * Indexes that keep their own copies of the lots' truck numbers (for counting or for aggregates)
+     * must be refreshed whenever the trucks of one of their lots change.
+     *
+     * @return True if refresh() has to be called after the trucks of a lot change
+     */
+    default boolean cachesOccupancy() {
+        return false;
+    }
+
+    /**
+     * Updates what the index keeps about the trucks of the lot with the given capacity constraint.
+     *
+     * @param capacityConstraint Capacity constraint of the lot whose trucks changed
+     */
+    default void refresh(long capacityConstraint) {
+    }
+
+    /**
+     * Finds the available lot with the best score among the lots whose capacity constraint is in [low, high].
+     * Ties go to the lot with the larger capacity constraint. This implementation visits every lot in the
+     * range; indexes with occupancy aggregates answer it in O(log n).
+     *
+     * @param low     Smallest capacity constraint of the range
+     * @param high    Largest capacity constraint of the range
+     * @param scoring FREE_SLOTS to prefer lots with more free slots, LOAD to prefer lots with fewer trucks
+     * @return The best lot in the range, or null if no lot in the range can take a truck
+     */
+    default ParkingLot findBestLot(long low, long high, int scoring) {
+        ParkingLot best = null;
+        long bestScore = 0;
+        ParkingLot parkingLot = searchElement(high);
+        if (parkingLot == null) {
+            parkingLot = findHighestSmallerElement(high);
+        }
+        // visit the range from the largest capacity constraint down, so ties keep the larger one
+        while (parkingLot != null && parkingLot.getCapacityConstraint() >= low) {
+            if (parkingLot.getAvailability()) {
+                long score = scoring == FREE_SLOTS ? parkingLot.getFreeSlots()
+                        : -(parkingLot.getTruckNumberInWaiting() + parkingLot.getTruckNumberInReady());
+                if (best == null || score > bestScore) {
+                    best = parkingLot;
+                    bestScore = score;
+                }
+            }
+            parkingLot = findHighestSmallerElement(parkingLot.getCapacityConstraint());
+        }
+        return best;
+    }
+
+    /**
+     * Finds the available lot with the smallest capacity constraint among the lots whose capacity constraint is
+     * in [low, high]. This implementation moves up from low one lot at a time past the lots that cannot take a
+     * truck; indexes with occupancy aggregates skip them with their free slot summaries.
+     *
+     * @param low  Smallest capacity constraint of the range
+     * @param high Largest capacity constraint of the range
+     * @return The first lot in the range that can take a truck, or null if there is none
+     */
+    default ParkingLot findFirstAvailableLot(long low, long high) {
+        ParkingLot parkingLot = findCeilingElement(low);
+        while (parkingLot != null && parkingLot.getCapacityConstraint() <= high) {
+            if (parkingLot.getAvailability()) {
+                return parkingLot;
+            }
+            parkingLot = findLeastBiggerElement(parkingLot.getCapacityConstraint());
+        }
+        return null;
+    }
+
+    /**
+     * Releases what the index holds outside the heap. Indexes that live on the heap have nothing to release.
+     *
+     * @throws IOException If the resources of the index cannot be released
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
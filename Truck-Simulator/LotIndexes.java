@@ -0,0 +1,54 @@
+import java.io.File;
+
+/**
+ * LotIndexes creates lot indexes by the names used on the command line.
+ */
+public class LotIndexes {
+    private LotIndexes() {
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param name            avl (the default), wavl, treap, btree, flat, adaptive, or mapped; mapped may be followed by
+     *                        ":directory" to choose where its file is created, and any of them may be preceded
+     *                        by "cached:" to put a CachingLotIndex in front of it, or by "counted:" to count its
+     *                        operations with a CountingLotIndex
+     * @param lotTable        Table of the lots that will be stored, the mapped index keeps only their handles
+     * @param tracksOccupancy True if the index must answer findBestLot() and findFirstAvailableLot() from
+     *                        occupancy aggregates, in O(log n) for the trees and O(range / 64 + 64) for flat;
+     *                        mapped keeps no aggregates and visits the lots in the range one at a time
+     * @return A new index
+     * @throws IllegalArgumentException If there is no index with that name
+     */
+    static LotIndex create(String name, LotTable lotTable, boolean tracksOccupancy) {
+        if (name.startsWith("cached:")) {
+            return new CachingLotIndex(create(name.substring("cached:".length()), lotTable, tracksOccupancy));
+        }
+        if (name.startsWith("counted:")) {
+            return new CountingLotIndex(create(name.substring("counted:".length()), lotTable, tracksOccupancy));
+        }
+        if (name.startsWith("mapped:")) {
+            return new MappedLotIndex(lotTable, new File(name.substring("mapped:".length())),
+                    MappedLotIndex.DEFAULT_CACHE_PAGES);
+        }
+        switch (name) {
+            case "avl":
+                return new MyAvlTree(tracksOccupancy);
+            case "wavl":
+                return new WavlLotIndex(tracksOccupancy);
+            case "treap":
+                return new TreapLotIndex(tracksOccupancy);
+            case "btree":
+                return new BTreeLotIndex(tracksOccupancy);
+            case "flat":
+                return new FlatLotIndex();
+            case "adaptive":
+                return new AdaptiveLotIndex(tracksOccupancy);
+            case "mapped":
+                return new MappedLotIndex(lotTable);
+            default:
+                throw new IllegalArgumentException("unknown lot index: " + name);
+        }
+    }
+}
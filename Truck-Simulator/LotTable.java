@@ -0,0 +1,365 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * LotTable stores the state of all parking lots as parallel arrays indexed by a lot handle.
+ * A lot costs one slot in each primitive array, and its waiting and ready sections
+ * are only allocated while they hold trucks. Handles of deleted lots are reused.
+ * ParkingLot objects are views of a row of this table.
+ * Listeners can be registered to be told whenever the trucks of a lot change.
+ * <p>
+ * Ready sections are queues by default. A table made for best-fit ready sections keeps them in TruckHeaps
+ * instead, so a lot hands out its ready truck with the smallest remaining capacity first.
+ * <p>
+ * Measured heap use per lot for one million lots in a Simulator with AVL trees (compressed oops), including the
+ * ParkingLot view, the trucks and the tree nodes: empty 137 bytes, one truck 273 bytes, ten trucks 881 bytes.
+ * Of these, the row and the view take 57 bytes, each truck with its queue node 72 bytes, and each tree holding
+ * the lot a 40 byte node (two trees for an empty or a full lot, three in between). Nodes of a tree that keeps
+ * occupancy aggregates take 56 bytes, so with most-free, least-loaded or round-robin the figures are 153, 289
+ * and 881 bytes, the full lot having left the tree of available lots.
+ */
+public class LotTable {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int RELEASED = -1;     // waiting count of a row whose lot was released
+
+    /**
+     * Listener is notified after a truck is added to, moved within or removed from a lot.
+     */
+    interface Listener {
+        /**
+         * @param handle Handle of the lot whose trucks changed
+         */
+        void lotChanged(int handle);
+    }
+
+    private long[] capacityConstraints;         // capacity constraint of each lot
+    private long[] truckLimits;                 // maximum number of trucks of each lot
+    private int[] waitingCounts;                // number of trucks in the waiting section of each lot
+    private int[] readyCounts;                  // number of trucks in the ready section of each lot
+    private MyQueue<Truck>[] waitingSections;   // waiting section of each lot, null while it is empty
+    private MyQueue<Truck>[] readySections;     // ready section of each lot in other tables, null while it is empty
+    private TruckHeap[] readyHeaps;             // ready section of each lot in best-fit tables, null while it is empty
+    private final boolean bestFitReady;         // true if ready sections are heaps instead of queues
+    private int[] freeHandles;                  // handles of deleted lots that can be reused
+    private int freeCount;                      // number of handles in freeHandles
+    private int rowCount;                       // number of rows ever used, handles are below this
+    private int lotCount;                       // number of lots currently in the table
+    private Listener[] listeners = new Listener[0];
+
+    /**
+     * Constructs an empty LotTable whose ready sections are queues.
+     */
+    public LotTable() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty LotTable.
+     *
+     * @param bestFitReady True to hand out ready trucks by smallest remaining capacity instead of in arrival order
+     */
+    public LotTable(boolean bestFitReady) {
+        this.bestFitReady = bestFitReady;
+        capacityConstraints = new long[INITIAL_CAPACITY];
+        truckLimits = new long[INITIAL_CAPACITY];
+        waitingCounts = new int[INITIAL_CAPACITY];
+        readyCounts = new int[INITIAL_CAPACITY];
+        waitingSections = newQueues(INITIAL_CAPACITY);
+        // only the array of the kind of ready section the table uses is allocated
+        if (bestFitReady) {
+            readyHeaps = new TruckHeap[INITIAL_CAPACITY];
+        } else {
+            readySections = newQueues(INITIAL_CAPACITY);
+        }
+        freeHandles = new int[INITIAL_CAPACITY];
+    }
+
+    // arrays of a generic type cannot be created directly; these only ever hold queues of trucks
+    @SuppressWarnings("unchecked")
+    private static MyQueue<Truck>[] newQueues(int length) {
+        return (MyQueue<Truck>[]) new MyQueue<?>[length];
+    }
+
+    /**
+     * Adds a lot with no trucks to the table.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     * @param truckLimit         Maximum number of trucks allowed in the lot
+     * @return The handle of the new lot
+     */
+    int allocate(long capacityConstraint, long truckLimit) {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount]; // reuse the row of a deleted lot
+        } else {
+            if (rowCount == capacityConstraints.length) {
+                grow();
+            }
+            handle = rowCount++;
+        }
+        capacityConstraints[handle] = capacityConstraint;
+        truckLimits[handle] = truckLimit;
+        waitingCounts[handle] = 0;
+        readyCounts[handle] = 0;
+        lotCount++;
+        return handle;
+    }
+
+    /**
+     * Removes a lot from the table, dropping its trucks. The handle may be given to a new lot afterwards.
+     *
+     * @param handle Handle of the lot
+     * @throws IllegalStateException If the lot was already released, which would give its row to two new lots
+     */
+    void release(int handle) {
+        if (waitingCounts[handle] == RELEASED) {
+            throw new IllegalStateException("lot " + handle + " is already released");
+        }
+        waitingSections[handle] = null;
+        if (bestFitReady) {
+            readyHeaps[handle] = null;
+        } else {
+            readySections[handle] = null;
+        }
+        waitingCounts[handle] = RELEASED;
+        readyCounts[handle] = 0;
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        lotCount--;
+    }
+
+    /**
+     * Registers a listener that is notified whenever the trucks of a lot change.
+     *
+     * @param listener The listener to be added
+     */
+    void addListener(Listener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    // tells every listener that the trucks of the given lot changed
+    private void notifyListeners(int handle) {
+        for (Listener listener : listeners) {
+            listener.lotChanged(handle);
+        }
+    }
+
+    // doubles the size of every row array
+    private void grow() {
+        int newCapacity = capacityConstraints.length * 2;
+        capacityConstraints = Arrays.copyOf(capacityConstraints, newCapacity);
+        truckLimits = Arrays.copyOf(truckLimits, newCapacity);
+        waitingCounts = Arrays.copyOf(waitingCounts, newCapacity);
+        readyCounts = Arrays.copyOf(readyCounts, newCapacity);
+        waitingSections = Arrays.copyOf(waitingSections, newCapacity);
+        if (bestFitReady) {
+            readyHeaps = Arrays.copyOf(readyHeaps, newCapacity);
+        } else {
+            readySections = Arrays.copyOf(readySections, newCapacity);
+        }
+    }
+
+    // adds a truck to the ready section of a lot, which must be counted by the caller
+    private void addToReady(int handle, Truck truck) {
+        if (bestFitReady) {
+            if (readyHeaps[handle] == null) {
+                readyHeaps[handle] = new TruckHeap();
+            }
+            readyHeaps[handle].add(truck);
+        } else {
+            if (readySections[handle] == null) {
+                readySections[handle] = new MyQueue<>();
+            }
+            readySections[handle].add(truck);
+        }
+    }
+
+    /**
+     * Adds a truck to the waiting section of a lot if its truck limit is not exceeded.
+     *
+     * @param handle Handle of the lot
+     * @param truck  The truck to be added
+     */
+    void addTruck(int handle, Truck truck) {
+        if (waitingCounts[handle] + readyCounts[handle] < truckLimits[handle]) {
+            if (waitingSections[handle] == null) {
+                waitingSections[handle] = new MyQueue<>();
+            }
+            waitingSections[handle].add(truck);
+            waitingCounts[handle]++;
+            notifyListeners(handle);
+        }
+    }
+
+    /**
+     * Moves the first truck of the waiting section of a lot to its ready section.
+     *
+     * @param handle Handle of the lot
+     * @return The truck moved to the ready section, or null if the waiting section is empty
+     */
+    Truck moveToReady(int handle) {
+        if (waitingCounts[handle] == 0) {
+            return null;
+        }
+        Truck truck = waitingSections[handle].remove();
+        if (--waitingCounts[handle] == 0) {
+            waitingSections[handle] = null;
+        }
+        addToReady(handle, truck);
+        readyCounts[handle]++;
+        notifyListeners(handle);
+        return truck;
+    }
+
+    /**
+     * Adds trucks to the waiting section of a lot until its truck limit is reached.
+     * The listeners are notified once for all of them.
+     *
+     * @param handle Handle of the lot
+     * @param trucks Array holding the trucks to be added
+     * @param from   Index of the first truck in the array
+     * @param count  Number of trucks to be added
+     * @return The number of trucks added, the first ones of the given trucks
+     */
+    int addTrucks(int handle, Truck[] trucks, int from, int count) {
+        int added = (int) Math.min(count, truckLimits[handle] - waitingCounts[handle] - readyCounts[handle]);
+        if (added <= 0) {
+            return 0;
+        }
+        if (waitingSections[handle] == null) {
+            waitingSections[handle] = new MyQueue<>();
+        }
+        for (int i = 0; i < added; i++) {
+            waitingSections[handle].add(trucks[from + i]);
+        }
+        waitingCounts[handle] += added;
+        notifyListeners(handle);
+        return added;
+    }
+
+    /**
+     * Moves the first trucks of the waiting section of a lot to its ready section, reusing their queue nodes
+     * when the ready section is a queue. The listeners are notified once for all of them.
+     *
+     * @param handle Handle of the lot
+     * @param count  Number of trucks to be moved
+     * @param moved  Array that receives the moved trucks in order
+     * @return The number of trucks moved, fewer than count if the waiting section runs out
+     */
+    int moveToReady(int handle, int count, Truck[] moved) {
+        int movedCount = Math.min(count, waitingCounts[handle]);
+        if (movedCount <= 0) {
+            return 0;
+        }
+        if (bestFitReady) {
+            for (int i = 0; i < movedCount; i++) {
+                moved[i] = waitingSections[handle].remove();
+                addToReady(handle, moved[i]);
+            }
+        } else {
+            if (readySections[handle] == null) {
+                readySections[handle] = new MyQueue<>();
+            }
+            waitingSections[handle].transferTo(readySections[handle], movedCount, moved);
+        }
+        if ((waitingCounts[handle] -= movedCount) == 0) {
+            waitingSections[handle] = null;
+        }
+        readyCounts[handle] += movedCount;
+        notifyListeners(handle);
+        return movedCount;
+    }
+
+    /**
+     * Removes the first truck of the ready section of a lot, the one with the smallest remaining capacity
+     * in best-fit tables.
+     *
+     * @param handle Handle of the lot
+     * @return The removed truck, or null if the ready section is empty
+     */
+    Truck removeFromReady(int handle) {
+        if (readyCounts[handle] == 0) {
+            return null;
+        }
+        Truck truck = bestFitReady ? readyHeaps[handle].remove() : readySections[handle].remove();
+        if (--readyCounts[handle] == 0) {
+            if (bestFitReady) {
+                readyHeaps[handle] = null;
+            } else {
+                readySections[handle] = null;
+            }
+        }
+        notifyListeners(handle);
+        return truck;
+    }
+
+    /**
+     * Visits the trucks of the waiting section of a lot in the order they will become ready.
+     *
+     * @param handle Handle of the lot
+     * @param action Called with every truck
+     */
+    void forEachWaitingTruck(int handle, Consumer<Truck> action) {
+        if (waitingSections[handle] != null) {
+            waitingSections[handle].forEach(action);
+        }
+    }
+
+    /**
+     * Visits the trucks of the ready section of a lot in the order they will be loaded.
+     *
+     * @param handle Handle of the lot
+     * @param action Called with every truck
+     */
+    void forEachReadyTruck(int handle, Consumer<Truck> action) {
+        if (bestFitReady) {
+            if (readyHeaps[handle] != null) {
+                readyHeaps[handle].forEachInOrder(action);
+            }
+        } else if (readySections[handle] != null) {
+            readySections[handle].forEach(action);
+        }
+    }
+
+    /**
+     * @param handle Handle of the lot
+     * @return The capacity constraint of the lot
+     */
+    long getCapacityConstraint(int handle) {
+        return capacityConstraints[handle];
+    }
+
+    /**
+     * @param handle Handle of the lot
+     * @return The maximum number of trucks allowed in the lot
+     */
+    long getTruckLimit(int handle) {
+        return truckLimits[handle];
+    }
+
+    /**
+     * @param handle Handle of the lot
+     * @return The number of trucks in the waiting section of the lot
+     */
+    int getTruckNumberInWaiting(int handle) {
+        return waitingCounts[handle];
+    }
+
+    /**
+     * @param handle Handle of the lot
+     * @return The number of trucks in the ready section of the lot
+     */
+    int getTruckNumberInReady(int handle) {
+        return readyCounts[handle];
+    }
+
+    /**
+     * @return The number of lots in the table
+     */
+    int size() {
+        return lotCount;
+    }
+}
@@ -5,9 +5,13 @@
  */
 
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -15,82 +19,198 @@ import java.util.Scanner;
  * This program reads instructions from an input file to perform
  * various operations on parking lots and trucks, such as creation,
  * deletion, addition of trucks, and load management.
+ * Options may follow the file names:
+ * "--format=binary" writes the results as binary records (see BinaryResultWriter) instead of text,
+ * "--policy=name[:window]" selects the placement policy (see PlacementPolicies), best-fit by default.
+ * "--index=name" selects the data structure of the lot indexes (see LotIndexes), avl by default.
+ * "--ready=best-fit" loads the ready trucks of a lot by smallest remaining capacity instead of
+ * in the order they became ready ("--ready=fifo", the default).
+ * "--sites" reads lines of the form "<site id> <action> ..." and simulates every site separately (see SiteRouter);
+ * the output argument is then a directory that receives a text file "site-<id>.txt" per site, so it cannot be
+ * combined with "--format=binary", and "--threads=n" sets the number of worker threads (the number of
+ * processors by default).
+ * "--parallel-decode" decodes the input file on "--threads=n" threads while the actions decoded so far are
+ * executed (see ParallelActionReader); the results are the same as without it.
+ * "--snapshot-cache=dir" stores snapshots of the simulator in a directory and starts from the longest stored
+ * start of the input (see SnapshotCache); "--snapshot-interval=n" sets the number of actions between snapshots
+ * and "--snapshot-cache-size=mb" the size limit of the directory in megabytes.
+ * "--occupancy=file" records the waiting and ready truck numbers of every lot over the run and writes them to
+ * the file at the end (see OccupancyRecorder); it cannot be combined with "--sites" or "--snapshot-cache".
  */
 public class Main {
     public static void main(String[] args) throws IOException {
-        // Constructing 4 AVL trees to handle parking lot operations based on their statuses
-        MyAvlTree parkingLots = new MyAvlTree();              // All parking lots
-        MyAvlTree availableParkingLots = new MyAvlTree();     // Available parking lots (lots that can take new truck )
-        MyAvlTree readyParkingLots = new MyAvlTree();         // Ready parking lots (lots that have truck in waiting)
-        MyAvlTree readyToLoadParkingLots = new MyAvlTree();   // Parking lots ready to load (lots that have truck in ready section)
-
         String actions = args[0];
         File actionsFile = new File(actions);
-        FileWriter outputFile = new FileWriter(args[1]);
-
+        boolean binaryOutput = false;
+        boolean multiSite = false;
+        boolean parallelDecode = false;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        String policyName = "best-fit";
+        String indexName = "avl";
+        boolean bestFitReady = false;
+        File snapshotDirectory = null;
+        int snapshotInterval = SnapshotCache.DEFAULT_INTERVAL;
+        long snapshotCacheBytes = SnapshotCache.DEFAULT_MAX_BYTES;
+        String occupancyFile = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--format=binary")) {
+                binaryOutput = true;
+            } else if (args[i].startsWith("--policy=")) {
+                policyName = args[i].substring("--policy=".length());
+            } else if (args[i].startsWith("--index=")) {
+                indexName = args[i].substring("--index=".length());
+            } else if (args[i].startsWith("--ready=")) {
+                bestFitReady = readyOrder(args[i].substring("--ready=".length()));
+            } else if (args[i].equals("--parallel-decode")) {
+                parallelDecode = true;
+            } else if (args[i].equals("--sites")) {
+                multiSite = true;
+            } else if (args[i].startsWith("--threads=")) {
+                threadCount = Integer.parseInt(args[i].substring("--threads=".length()));
+            } else if (args[i].startsWith("--snapshot-cache=")) {
+                snapshotDirectory = new File(args[i].substring("--snapshot-cache=".length()));
+            } else if (args[i].startsWith("--snapshot-interval=")) {
+                snapshotInterval = Integer.parseInt(args[i].substring("--snapshot-interval=".length()));
+            } else if (args[i].startsWith("--snapshot-cache-size=")) {
+                snapshotCacheBytes = Long.parseLong(args[i].substring("--snapshot-cache-size=".length())) << 20;
+            } else if (args[i].startsWith("--occupancy=")) {
+                occupancyFile = args[i].substring("--occupancy=".length());
+            }
+        }
         if (!actionsFile.exists()) {
             System.out.printf("%s cannot be found.", actionsFile);
             System.exit(1);
         }
+        if (occupancyFile != null && (multiSite || snapshotDirectory != null)) {
+            // sites have a simulator each, and restored snapshots skip the changes before them
+            throw new IllegalArgumentException("--occupancy cannot be combined with --sites or --snapshot-cache");
+        }
+        if (binaryOutput && multiSite) {
+            // every site writes its results to its own text file
+            throw new IllegalArgumentException("--format=binary cannot be combined with --sites");
+        }
+        if (multiSite) {
+            runSites(actionsFile, new File(args[1]), policyName, indexName, bestFitReady, threadCount);
+            return;
+        }
+
+        ResultSink outputFile;
+        if (binaryOutput) {
+            outputFile = new BinaryResultWriter(args[1]);
+        } else {
+            outputFile = new TextResultWriter(new FileWriter(args[1]));
+        }
+        if (snapshotDirectory != null) {
+            SnapshotCache cache = new SnapshotCache(snapshotDirectory, snapshotCacheBytes, snapshotInterval,
+                    policyName + " " + (bestFitReady ? "best-fit" : "fifo"));
+            runFromSnapshots(actionsFile, cache, policyName, indexName, bestFitReady, threadCount, outputFile);
+            return;
+        }
+        // The simulator keeps the parking lots in 4 AVL trees based on their statuses
+        Simulator simulator = new Simulator(PlacementPolicies.forName(policyName), indexName, bestFitReady, outputFile);
+        OccupancyRecorder occupancy = occupancyFile == null ? null : simulator.recordOccupancy();
+        if (parallelDecode) {
+            try (ParallelActionReader reader = new ParallelActionReader(actionsFile, threadCount,
+                    ParallelActionReader.DEFAULT_CHUNK_SIZE)) {
+                for (ActionBuffer chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                    simulator.execute(chunk);
+                }
+            }
+            outputFile.close();
+            writeOccupancy(occupancy, occupancyFile);
+            simulator.close();
+            return;
+        }
         Scanner actionsInputFile = new Scanner(actionsFile);
 
         // Reading and processing each line from the input file
         while (actionsInputFile.hasNextLine()) {
-            String line = actionsInputFile.nextLine(); // Current line is kept
-            String[] info = line.split(" "); // in given format words are spaced so, we split by blank char
-
-            // process create_parking_lot <capacity constraint> <truck limit> (given format)
-            if (info[0].equals("create_parking_lot")) {
-                long capacityConstraint = Long.parseLong(info[1]);
-                long truckLimit = Long.parseLong(info[2]);
-                ParkingLot parkingLot = Methods.createParkingLot(capacityConstraint, truckLimit);
-                // after creating the lot it is initially added to parking lots
-                // and availableParkingLots (lots that have place, initially all lots have place)
-                parkingLots.insertElement(parkingLot);
-                availableParkingLots.insertElement(parkingLot);
-            }
-
-            // process delete_parking_lot <capacity constraint>
-            if (info[0].equals("delete_parking_lot")) {
-                long capacityConstraint = Long.parseLong(info[1]);
-                // parking lot should be deleted from all AVL trees since no operation can be done on it now
-                parkingLots.deleteElement(capacityConstraint);
-                availableParkingLots.deleteElement(capacityConstraint);
-                readyParkingLots.deleteElement(capacityConstraint);
-                readyToLoadParkingLots.deleteElement(capacityConstraint);
-            }
+            simulator.execute(actionsInputFile.nextLine());
+        }
 
-            // process delete_parking_lot <capacity constraint>
-            if (info[0].equals("add_truck")) {
-                long truckId = Long.parseLong(info[1]);
-                long capacity = Long.parseLong(info[2]);
-                Methods.addToParkingLot(availableParkingLots, readyParkingLots, new Truck(truckId, capacity), outputFile);
-            }
+        actionsInputFile.close(); // Closing input file for safety
+        outputFile.close(); // Closing output file for safety
+        writeOccupancy(occupancy, occupancyFile);
+        simulator.close(); // Closing the lot indexes, which deletes the files of mapped ones
+    }
 
-            // process ready <capacity constraint>
-            if (info[0].equals("ready")) {
-                long capacityConstraint = Long.parseLong(info[1]);
-                Methods.transferToReady(readyParkingLots, readyToLoadParkingLots, capacityConstraint, outputFile);
+    // writes the recorded occupancy of the lots, if it was recorded
+    private static void writeOccupancy(OccupancyRecorder occupancy, String occupancyFile) throws IOException {
+        if (occupancy != null) {
+            try (Writer writer = new BufferedWriter(new FileWriter(occupancyFile))) {
+                occupancy.dump(writer);
             }
+        }
+    }
 
-            // process load <capacity constraint> <load amount>
-            if (info[0].equals("load")) {
-                long capacityConstraint = Long.parseLong(info[1]);
-                long loadAmount = Long.parseLong(info[2]);
-                Methods.loadToTrucks(availableParkingLots, readyParkingLots, readyToLoadParkingLots, capacityConstraint, loadAmount, outputFile);
-            }
+    /**
+     * Routes the lines of a multi-site input file to one simulator per site and writes each site's results
+     * to its own file in the output directory.
+     *
+     * @param actionsFile     The input file with a site id at the start of every line
+     * @param outputDirectory The directory that receives the output file of every site
+     * @param policyName      The placement policy of every site
+     * @param indexName       The kind of lot index of every site
+     * @param bestFitReady    True to load the ready trucks of a lot by smallest remaining capacity
+     * @param threadCount     The number of worker threads
+     * @throws IOException If an I/O error occurs while reading the input or writing the outputs
+     */
+    private static void runSites(File actionsFile, File outputDirectory, String policyName, String indexName,
+                                 boolean bestFitReady, int threadCount) throws IOException {
+        outputDirectory.mkdirs();
+        SiteRouter router = new SiteRouter(threadCount, policyName, indexName, bestFitReady, siteId ->
+                new TextResultWriter(new SiteOutputWriter(new File(outputDirectory, "site-" + siteId + ".txt").getPath())));
+        Scanner actionsInputFile = new Scanner(actionsFile);
+        while (actionsInputFile.hasNextLine()) {
+            router.submit(actionsInputFile.nextLine());
+        }
+        actionsInputFile.close();
+        router.close(); // waits until every site has executed all of its actions
+    }
 
-            // process count <capacity constraint>
-            if (info[0].equals("count")) {
-                long capacityConstraint = Long.parseLong(info[1]);
-                long totalTruckNumber = Methods.countTrucksInLargerLots(parkingLots, capacityConstraint);
-                // in the count unlike the others, returned value is written to output file here
-                outputFile.write(totalTruckNumber + "\n");
+    /**
+     * Executes an input file through a snapshot cache. The whole file is decoded first, as the cache has to hash
+     * the actions before it can tell how many of them it can skip.
+     *
+     * @param actionsFile  The input file
+     * @param cache        The snapshot cache
+     * @param policyName   The placement policy
+     * @param indexName    The kind of lot index
+     * @param bestFitReady True to load the ready trucks of a lot by smallest remaining capacity
+     * @param threadCount  The number of threads that decode the input
+     * @param outputFile   The sink that receives the results, closed at the end
+     * @throws IOException If an I/O error occurs while reading the input, the cache or writing the results
+     */
+    private static void runFromSnapshots(File actionsFile, SnapshotCache cache, String policyName, String indexName,
+                                         boolean bestFitReady, int threadCount, ResultSink outputFile)
+            throws IOException {
+        List<ActionBuffer> chunks = new ArrayList<>();
+        try (ParallelActionReader reader = new ParallelActionReader(actionsFile, threadCount,
+                ParallelActionReader.DEFAULT_CHUNK_SIZE)) {
+            for (ActionBuffer chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                chunks.add(chunk);
             }
         }
+        RecordingSink recording = new RecordingSink(outputFile);
+        Simulator simulator = new Simulator(PlacementPolicies.forName(policyName), indexName, bestFitReady, recording);
+        cache.run(chunks, simulator, recording, outputFile);
+        outputFile.close();
+        simulator.close();
+    }
 
-        actionsInputFile.close(); // Closing input file for safety
-        outputFile.close(); // Closing output file for safety
+    /**
+     * @param name fifo or best-fit
+     * @return True for best-fit
+     * @throws IllegalArgumentException If the name is neither
+     */
+    private static boolean readyOrder(String name) {
+        switch (name) {
+            case "fifo":
+                return false;
+            case "best-fit":
+                return true;
+            default:
+                throw new IllegalArgumentException("unknown ready order: " + name);
+        }
     }
 }
-
@@ -0,0 +1,720 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * MappedLotIndex is a B+tree whose nodes are 4 KB pages of a memory-mapped file, so the index of a large depot
+ * lives outside the Java heap. Keys are capacity constraints and values are lot handles of a LotTable,
+ * returned as ParkingLot views. Every page keeps truck numbers: leaves per lot, inner pages per child subtree,
+ * so counting the trucks in larger lots reads one page per level instead of every lot.
+ * <p>
+ * Pages are copied into a small cache of long arrays on the heap, and the clock algorithm picks the page to
+ * write back when the cache is full. The file grows in mapped chunks of 64 MB. Deletions free pages that
+ * become empty but do not merge pages that are only partly full. The ParkingLot views of recently found
+ * handles are kept and returned again.
+ */
+public class MappedLotIndex implements LotIndex {
+    static final int PAGE_SIZE = 4096;
+    static final int DEFAULT_CACHE_PAGES = 256;
+
+    private static final int PAGE_LONGS = PAGE_SIZE / Long.BYTES;
+    private static final int CHUNK_PAGES = 16_384;    // pages per mapped chunk of the file
+    private static final int NONE = -1;               // page number that stands for no page
+    private static final int VIEW_CACHE_SIZE = 1024;  // views kept for reuse, a power of two
+
+    // header of every page: whether it is a leaf, its number of keys, and for leaves the neighbouring leaves
+    private static final int KIND = 0;
+    private static final int COUNT = 1;
+    private static final int NEXT = 2;
+    private static final int PREVIOUS = 3;
+    private static final int HEADER = 4;
+    private static final long LEAF = 1;
+    private static final long INNER = 0;
+
+    // a leaf holds keys, handles and truck numbers, an inner page holds keys, children and subtree truck numbers
+    private static final int LEAF_CAPACITY = (PAGE_LONGS - HEADER) / 3;
+    private static final int HANDLES = HEADER + LEAF_CAPACITY;
+    private static final int TRUCKS = HEADER + 2 * LEAF_CAPACITY;
+    private static final int INNER_CAPACITY = (PAGE_LONGS - HEADER - 2) / 3;
+    private static final int CHILDREN = HEADER + INNER_CAPACITY;
+    private static final int SUBTREE_TRUCKS = HEADER + 2 * INNER_CAPACITY + 1;
+
+    private final LotTable lotTable;  // Table of the lots whose handles are stored
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private LongBuffer[] chunks = new LongBuffer[0];
+
+    // page cache
+    private final long[][] frames;
+    private final int[] framePages;       // page held by each frame, or NONE
+    private final int[] pins;             // number of callers using each frame
+    private final boolean[] referenced;   // second chance bit of the clock
+    private final boolean[] dirty;        // frame differs from the file
+    private int[] pageFrames = new int[0];  // frame holding each page, or NONE
+    private int clockHand;
+
+    private int pageCount;                // number of pages ever used
+    private int[] freePages = new int[16];
+    private int freeCount;
+    private int root;
+    private int size;
+
+    // views returned by lookups, in the slot given by the low bits of their handles
+    private final ParkingLot[] views = new ParkingLot[VIEW_CACHE_SIZE];
+
+    // pages and child positions on the way from the root to the last leaf found
+    private final int[] pathPages = new int[32];
+    private final int[] pathSlots = new int[32];
+    private int pathLength;
+
+    /**
+     * Creates an empty index in a new file, which is deleted when the index is closed or the program exits.
+     *
+     * @param lotTable   Table of the lots that will be stored
+     * @param directory  Directory of the file, or null for the default temporary directory
+     * @param cachePages Number of pages cached on the heap
+     */
+    public MappedLotIndex(LotTable lotTable, File directory, int cachePages) {
+        if (cachePages < 16) {
+            throw new IllegalArgumentException("the page cache needs at least 16 pages");
+        }
+        this.lotTable = lotTable;
+        frames = new long[cachePages][PAGE_LONGS];
+        framePages = new int[cachePages];
+        Arrays.fill(framePages, NONE);
+        pins = new int[cachePages];
+        referenced = new boolean[cachePages];
+        dirty = new boolean[cachePages];
+        try {
+            file = File.createTempFile("lots-", ".idx", directory);
+            file.deleteOnExit();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        root = allocatePage();
+        long[] page = frames[pageFrames[root]];
+        page[KIND] = LEAF;
+        page[NEXT] = NONE;
+        page[PREVIOUS] = NONE;
+        unpin(pageFrames[root]);
+    }
+
+    /**
+     * Creates an empty index in the default temporary directory with the default page cache.
+     *
+     * @param lotTable Table of the lots that will be stored
+     */
+    public MappedLotIndex(LotTable lotTable) {
+        this(lotTable, null, DEFAULT_CACHE_PAGES);
+    }
+
+    // ---- file and page cache ----
+
+    // the part of the file holding a page, mapped on first use, mapping past the end grows the file
+    private LongBuffer chunk(int page) {
+        int index = page / CHUNK_PAGES;
+        if (index >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, index + 1);
+        }
+        if (chunks[index] == null) {
+            try {
+                long bytes = (long) CHUNK_PAGES * PAGE_SIZE;
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, index * bytes, bytes);
+                chunks[index] = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return chunks[index];
+    }
+
+    // returns the frame of a page and pins it, so it stays in the cache until unpin()
+    private int pin(int page) {
+        int frame = pageFrames[page];
+        if (frame == NONE) {
+            frame = evict();
+            chunk(page).get((page % CHUNK_PAGES) * PAGE_LONGS, frames[frame], 0, PAGE_LONGS);
+            framePages[frame] = page;
+            pageFrames[page] = frame;
+        }
+        pins[frame]++;
+        referenced[frame] = true;
+        return frame;
+    }
+
+    private void unpin(int frame) {
+        pins[frame]--;
+    }
+
+    // frees a frame with the clock algorithm: frames used since the hand last passed get a second chance
+    private int evict() {
+        for (int step = 0; step < 2 * frames.length + 1; step++) {
+            int frame = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            if (pins[frame] > 0) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            int page = framePages[frame];
+            if (page != NONE) {
+                if (dirty[frame]) {
+                    chunk(page).put((page % CHUNK_PAGES) * PAGE_LONGS, frames[frame], 0, PAGE_LONGS);
+                    dirty[frame] = false;
+                }
+                pageFrames[page] = NONE;
+                framePages[frame] = NONE;
+            }
+            return frame;
+        }
+        throw new IllegalStateException("every cached page is in use");
+    }
+
+    // takes a free page or adds one to the file, and returns it cleared and pinned
+    private int allocatePage() {
+        int page;
+        if (freeCount > 0) {
+            page = freePages[--freeCount];
+        } else {
+            page = pageCount++;
+            if (page == pageFrames.length) {
+                int oldLength = pageFrames.length;
+                pageFrames = Arrays.copyOf(pageFrames, Math.max(16, oldLength * 2));
+                Arrays.fill(pageFrames, oldLength, pageFrames.length, NONE);
+            }
+        }
+        int frame = pageFrames[page];
+        if (frame == NONE) {
+            frame = evict();
+            framePages[frame] = page;
+            pageFrames[page] = frame;
+        }
+        Arrays.fill(frames[frame], 0);
+        pins[frame]++;
+        referenced[frame] = true;
+        dirty[frame] = true;
+        return page;
+    }
+
+    private void freePage(int page) {
+        if (freeCount == freePages.length) {
+            freePages = Arrays.copyOf(freePages, freeCount * 2);
+        }
+        freePages[freeCount++] = page;
+    }
+
+    // ---- search ----
+
+    // position of the first key in the page that is not less than the given one
+    private static int lowerBound(long[] page, long key) {
+        int low = 0;
+        int high = (int) page[COUNT];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (page[HEADER + middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // position of the first key in the page that is greater than the given one
+    private static int upperBound(long[] page, long key) {
+        int low = 0;
+        int high = (int) page[COUNT];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (page[HEADER + middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // walks from the root to the leaf that covers the key, remembering the path, and returns the pinned leaf frame
+    private int findLeaf(long key) {
+        int page = root;
+        pathLength = 0;
+        while (true) {
+            int frame = pin(page);
+            long[] content = frames[frame];
+            if (content[KIND] == LEAF) {
+                return frame;
+            }
+            // child i holds the keys from key i - 1 up to, but not including, key i
+            int slot = upperBound(content, key);
+            pathPages[pathLength] = page;
+            pathSlots[pathLength] = slot;
+            pathLength++;
+            page = (int) content[CHILDREN + slot];
+            unpin(frame);
+        }
+    }
+
+    // adds a difference to the subtree truck numbers on the path, from the given depth up to the root
+    private void addToPath(int depth, long difference) {
+        if (difference == 0) {
+            return;
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            int frame = pin(pathPages[i]);
+            frames[frame][SUBTREE_TRUCKS + pathSlots[i]] += difference;
+            dirty[frame] = true;
+            unpin(frame);
+        }
+    }
+
+    // a view of the lot with the given handle; views only name a row of the table, so the one returned last
+    // for the handle is returned again, and lookups that keep visiting the same lots allocate nothing
+    private ParkingLot view(long handle) {
+        int slot = (int) handle & (VIEW_CACHE_SIZE - 1);
+        ParkingLot view = views[slot];
+        if (view == null || view.getHandle() != handle) {
+            view = new ParkingLot(lotTable, (int) handle);
+            views[slot] = view;
+        }
+        return view;
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int position = lowerBound(leaf, capacityConstraint);
+        ParkingLot result = position < leaf[COUNT] && leaf[HEADER + position] == capacityConstraint
+                ? view(leaf[HANDLES + position]) : null;
+        unpin(frame);
+        return result;
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int position = lowerBound(leaf, capacityConstraint) - 1;
+        if (position >= 0) {
+            ParkingLot result = view(leaf[HANDLES + position]);
+            unpin(frame);
+            return result;
+        }
+        // every key of the previous leaf is smaller, and leaves other than the root are never empty
+        int previous = (int) leaf[PREVIOUS];
+        unpin(frame);
+        if (previous == NONE) {
+            return null;
+        }
+        frame = pin(previous);
+        leaf = frames[frame];
+        ParkingLot result = view(leaf[HANDLES + (int) leaf[COUNT] - 1]);
+        unpin(frame);
+        return result;
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int position = upperBound(leaf, capacityConstraint);
+        if (position < leaf[COUNT]) {
+            ParkingLot result = view(leaf[HANDLES + position]);
+            unpin(frame);
+            return result;
+        }
+        int next = (int) leaf[NEXT];
+        unpin(frame);
+        if (next == NONE) {
+            return null;
+        }
+        frame = pin(next);
+        ParkingLot result = view(frames[frame][HANDLES]);
+        unpin(frame);
+        return result;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        // keys are integers, so the floor is the nearest key below the next integer, found in one descent
+        return capacityConstraint == Long.MAX_VALUE ? LotIndex.super.findFloorElement(capacityConstraint)
+                : findHighestSmallerElement(capacityConstraint + 1);
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        return capacityConstraint == Long.MIN_VALUE ? LotIndex.super.findCeilingElement(capacityConstraint)
+                : findLeastBiggerElement(capacityConstraint - 1);
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        long total = 0;
+        int page = root;
+        while (true) {
+            int frame = pin(page);
+            long[] content = frames[frame];
+            int count = (int) content[COUNT];
+            if (content[KIND] == LEAF) {
+                for (int i = upperBound(content, capacityConstraint); i < count; i++) {
+                    total += content[TRUCKS + i];
+                }
+                unpin(frame);
+                return total;
+            }
+            // the children right of the one covering the key only hold larger lots
+            int slot = upperBound(content, capacityConstraint);
+            for (int i = slot + 1; i <= count; i++) {
+                total += content[SUBTREE_TRUCKS + i];
+            }
+            page = (int) content[CHILDREN + slot];
+            unpin(frame);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        int page = root;
+        while (true) {
+            int frame = pin(page);
+            long[] content = frames[frame];
+            int next = (int) content[CHILDREN];
+            boolean leaf = content[KIND] == LEAF;
+            unpin(frame);
+            if (leaf) {
+                break;
+            }
+            page = next;
+        }
+        while (page != NONE) {
+            int frame = pin(page);
+            long[] leaf = frames[frame];
+            int count = (int) leaf[COUNT];
+            long[] handles = Arrays.copyOfRange(leaf, HANDLES, HANDLES + count);
+            page = (int) leaf[NEXT];
+            unpin(frame);
+            for (long handle : handles) {
+                action.accept(view(handle));
+            }
+        }
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return true;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int position = lowerBound(leaf, capacityConstraint);
+        long difference = 0;
+        if (position < leaf[COUNT] && leaf[HEADER + position] == capacityConstraint) {
+            int handle = (int) leaf[HANDLES + position];
+            long trucks = lotTable.getTruckNumberInWaiting(handle) + lotTable.getTruckNumberInReady(handle);
+            difference = trucks - leaf[TRUCKS + position];
+            leaf[TRUCKS + position] = trucks;
+            dirty[frame] = difference != 0 || dirty[frame];
+        }
+        unpin(frame);
+        addToPath(pathLength, difference);
+    }
+
+    // ---- updates ----
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        insert(element.getCapacityConstraint(), element.getHandle(),
+                element.getTruckNumberInWaiting() + element.getTruckNumberInReady());
+    }
+
+    /**
+     * Adds a lot by its handle, or does nothing if its capacity constraint is already in the index.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     * @param handle             Handle of the lot in the table
+     * @param trucks             Number of trucks in the lot
+     */
+    void insert(long capacityConstraint, int handle, long trucks) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int count = (int) leaf[COUNT];
+        int position = lowerBound(leaf, capacityConstraint);
+        if (position < count && leaf[HEADER + position] == capacityConstraint) {
+            unpin(frame);
+            return; // the lot is already in the index
+        }
+        size++;
+        dirty[frame] = true;
+        if (count < LEAF_CAPACITY) {
+            insertEntry(leaf, position, capacityConstraint, handle, trucks);
+            unpin(frame);
+            addToPath(pathLength, trucks);
+            return;
+        }
+        // split the full leaf, the upper half moves to a new leaf on its right
+        int leafPage = framePages[frame];
+        int rightPage = allocatePage();
+        int rightFrame = pageFrames[rightPage];
+        long[] right = frames[rightFrame];
+        int half = (LEAF_CAPACITY + 1) / 2;
+        int moved = count - half;
+        right[KIND] = LEAF;
+        System.arraycopy(leaf, HEADER + half, right, HEADER, moved);
+        System.arraycopy(leaf, HANDLES + half, right, HANDLES, moved);
+        System.arraycopy(leaf, TRUCKS + half, right, TRUCKS, moved);
+        right[COUNT] = moved;
+        leaf[COUNT] = half;
+        if (position <= half) {
+            insertEntry(leaf, position, capacityConstraint, handle, trucks);
+        } else {
+            insertEntry(right, position - half, capacityConstraint, handle, trucks);
+        }
+        int next = (int) leaf[NEXT];
+        right[NEXT] = next;
+        right[PREVIOUS] = leafPage;
+        leaf[NEXT] = rightPage;
+        if (next != NONE) {
+            int nextFrame = pin(next);
+            frames[nextFrame][PREVIOUS] = rightPage;
+            dirty[nextFrame] = true;
+            unpin(nextFrame);
+        }
+        long separator = right[HEADER];
+        long leftTrucks = sum(leaf, TRUCKS, (int) leaf[COUNT]);
+        long rightTrucks = sum(right, TRUCKS, (int) right[COUNT]);
+        unpin(frame);
+        unpin(rightFrame);
+        insertChild(pathLength, leafPage, separator, rightPage, leftTrucks, rightTrucks, trucks);
+    }
+
+    private static void insertEntry(long[] leaf, int position, long key, long handle, long trucks) {
+        int count = (int) leaf[COUNT];
+        System.arraycopy(leaf, HEADER + position, leaf, HEADER + position + 1, count - position);
+        System.arraycopy(leaf, HANDLES + position, leaf, HANDLES + position + 1, count - position);
+        System.arraycopy(leaf, TRUCKS + position, leaf, TRUCKS + position + 1, count - position);
+        leaf[HEADER + position] = key;
+        leaf[HANDLES + position] = handle;
+        leaf[TRUCKS + position] = trucks;
+        leaf[COUNT] = count + 1;
+    }
+
+    private static long sum(long[] page, int offset, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += page[offset + i];
+        }
+        return total;
+    }
+
+    // puts a new right sibling next to the child at the given depth of the path, splitting parents that are full
+    private void insertChild(int depth, int leftPage, long separator, int rightPage,
+                             long leftTrucks, long rightTrucks, long added) {
+        while (depth > 0) {
+            depth--;
+            int frame = pin(pathPages[depth]);
+            long[] parent = frames[frame];
+            dirty[frame] = true;
+            int slot = pathSlots[depth];
+            int count = (int) parent[COUNT];
+            if (count < INNER_CAPACITY) {
+                insertSeparator(parent, slot, separator, rightPage, leftTrucks, rightTrucks);
+                unpin(frame);
+                addToPath(depth, added);
+                return;
+            }
+            // split the full inner page around its middle key, which moves up to the grandparent
+            long[] keys = new long[count + 1];
+            long[] children = new long[count + 2];
+            long[] subtreeTrucks = new long[count + 2];
+            System.arraycopy(parent, HEADER, keys, 0, slot);
+            keys[slot] = separator;
+            System.arraycopy(parent, HEADER + slot, keys, slot + 1, count - slot);
+            System.arraycopy(parent, CHILDREN, children, 0, slot + 1);
+            children[slot + 1] = rightPage;
+            System.arraycopy(parent, CHILDREN + slot + 1, children, slot + 2, count - slot);
+            System.arraycopy(parent, SUBTREE_TRUCKS, subtreeTrucks, 0, slot);
+            subtreeTrucks[slot] = leftTrucks;
+            subtreeTrucks[slot + 1] = rightTrucks;
+            System.arraycopy(parent, SUBTREE_TRUCKS + slot + 1, subtreeTrucks, slot + 2, count - slot);
+            int middle = (count + 1) / 2;
+            int siblingPage = allocatePage();
+            int siblingFrame = pageFrames[siblingPage];
+            long[] sibling = frames[siblingFrame];
+            sibling[KIND] = INNER;
+            writeInner(parent, keys, children, subtreeTrucks, 0, middle);
+            writeInner(sibling, keys, children, subtreeTrucks, middle + 1, count + 1);
+            leftPage = pathPages[depth];
+            separator = keys[middle];
+            rightPage = siblingPage;
+            leftTrucks = sum(parent, SUBTREE_TRUCKS, middle + 1);
+            rightTrucks = sum(sibling, SUBTREE_TRUCKS, count - middle + 1);
+            unpin(frame);
+            unpin(siblingFrame);
+        }
+        // the root was split, a new root gets the two halves as its children
+        int rootPage = allocatePage();
+        int frame = pageFrames[rootPage];
+        long[] newRoot = frames[frame];
+        newRoot[KIND] = INNER;
+        newRoot[COUNT] = 1;
+        newRoot[HEADER] = separator;
+        newRoot[CHILDREN] = leftPage;
+        newRoot[CHILDREN + 1] = rightPage;
+        newRoot[SUBTREE_TRUCKS] = leftTrucks;
+        newRoot[SUBTREE_TRUCKS + 1] = rightTrucks;
+        unpin(frame);
+        root = rootPage;
+    }
+
+    private static void insertSeparator(long[] page, int slot, long separator, long rightPage,
+                                        long leftTrucks, long rightTrucks) {
+        int count = (int) page[COUNT];
+        System.arraycopy(page, HEADER + slot, page, HEADER + slot + 1, count - slot);
+        System.arraycopy(page, CHILDREN + slot + 1, page, CHILDREN + slot + 2, count - slot);
+        System.arraycopy(page, SUBTREE_TRUCKS + slot + 1, page, SUBTREE_TRUCKS + slot + 2, count - slot);
+        page[HEADER + slot] = separator;
+        page[CHILDREN + slot + 1] = rightPage;
+        page[SUBTREE_TRUCKS + slot] = leftTrucks;
+        page[SUBTREE_TRUCKS + slot + 1] = rightTrucks;
+        page[COUNT] = count + 1;
+    }
+
+    // fills an inner page with keys [from, to) and the children around them
+    private static void writeInner(long[] page, long[] keys, long[] children, long[] subtreeTrucks, int from, int to) {
+        int count = to - from;
+        System.arraycopy(keys, from, page, HEADER, count);
+        System.arraycopy(children, from, page, CHILDREN, count + 1);
+        System.arraycopy(subtreeTrucks, from, page, SUBTREE_TRUCKS, count + 1);
+        page[COUNT] = count;
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        int frame = findLeaf(capacityConstraint);
+        long[] leaf = frames[frame];
+        int count = (int) leaf[COUNT];
+        int position = lowerBound(leaf, capacityConstraint);
+        if (position == count || leaf[HEADER + position] != capacityConstraint) {
+            unpin(frame);
+            return; // there is no such lot
+        }
+        long trucks = leaf[TRUCKS + position];
+        System.arraycopy(leaf, HEADER + position + 1, leaf, HEADER + position, count - position - 1);
+        System.arraycopy(leaf, HANDLES + position + 1, leaf, HANDLES + position, count - position - 1);
+        System.arraycopy(leaf, TRUCKS + position + 1, leaf, TRUCKS + position, count - position - 1);
+        leaf[COUNT] = count - 1;
+        dirty[frame] = true;
+        size--;
+        if (count > 1 || pathLength == 0) {
+            unpin(frame);
+            addToPath(pathLength, -trucks);
+            return;
+        }
+        // the leaf is empty, it is unlinked from its neighbours and removed from its parent
+        int leafPage = framePages[frame];
+        int previous = (int) leaf[PREVIOUS];
+        int next = (int) leaf[NEXT];
+        unpin(frame);
+        if (previous != NONE) {
+            int previousFrame = pin(previous);
+            frames[previousFrame][NEXT] = next;
+            dirty[previousFrame] = true;
+            unpin(previousFrame);
+        }
+        if (next != NONE) {
+            int nextFrame = pin(next);
+            frames[nextFrame][PREVIOUS] = previous;
+            dirty[nextFrame] = true;
+            unpin(nextFrame);
+        }
+        freePage(leafPage);
+        removeChild(pathLength, trucks);
+    }
+
+    // removes the child at the given depth of the path from its parent, removing parents that become empty
+    private void removeChild(int depth, long removed) {
+        while (depth > 0) {
+            depth--;
+            int page = pathPages[depth];
+            int frame = pin(page);
+            long[] parent = frames[frame];
+            int count = (int) parent[COUNT];
+            int slot = pathSlots[depth];
+            if (count == 0 && depth > 0) {
+                // the page had only this child, so it goes away as well
+                unpin(frame);
+                freePage(page);
+                continue;
+            }
+            if (count == 0) {
+                // the root lost its only child, the tree is empty again
+                parent[KIND] = LEAF;
+                parent[NEXT] = NONE;
+                parent[PREVIOUS] = NONE;
+                dirty[frame] = true;
+                unpin(frame);
+                return;
+            }
+            // the key next to the child goes with it, the one on its left unless it is the first child
+            int key = slot > 0 ? slot - 1 : 0;
+            System.arraycopy(parent, HEADER + key + 1, parent, HEADER + key, count - key - 1);
+            System.arraycopy(parent, CHILDREN + slot + 1, parent, CHILDREN + slot, count - slot);
+            System.arraycopy(parent, SUBTREE_TRUCKS + slot + 1, parent, SUBTREE_TRUCKS + slot, count - slot);
+            parent[COUNT] = count - 1;
+            dirty[frame] = true;
+            unpin(frame);
+            addToPath(depth, -removed);
+            break;
+        }
+        // a root with a single child is replaced by the child
+        while (true) {
+            int frame = pin(root);
+            long[] content = frames[frame];
+            if (content[KIND] == LEAF || content[COUNT] > 0) {
+                unpin(frame);
+                return;
+            }
+            int child = (int) content[CHILDREN];
+            unpin(frame);
+            freePage(root);
+            root = child;
+        }
+    }
+
+    /**
+     * @return The number of pages the index has taken in its file
+     */
+    int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Closes and deletes the file of the index.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks = new LongBuffer[0];
+        randomAccessFile.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
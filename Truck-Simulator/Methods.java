@@ -1,16 +1,16 @@
-import java.io.FileWriter;
 import java.io.IOException;
 public class Methods {
 
     /**
      * Creates a new ParkingLot with the specified capacity constraint and truck limit.
      *
+     * @param lotTable The table that stores the state of the parking lots
      * @param capacityConstraint The maximum load capacity of the parking lot
      * @param truckLimit The maximum number of trucks allowed in the parking lot
      * @return A new ParkingLot instance with the specified capacity constraint and truck limit
      */
-    static ParkingLot createParkingLot(long capacityConstraint, long truckLimit) {
-        return new ParkingLot(capacityConstraint, truckLimit);
+    static ParkingLot createParkingLot(LotTable lotTable, long capacityConstraint, long truckLimit) {
+        return new ParkingLot(lotTable, capacityConstraint, truckLimit);
     }
 
     /**
@@ -22,16 +22,15 @@ public class Methods {
      * @return A parking lot with the largest capacity constraint below the specified constraint
      *         and is available, or null if no such lot is found
      */
-    static ParkingLot findLowerAvailableLot(MyAvlTree AVLtree, long capacityConstraint) {
-
-        ParkingLot parkingLot = AVLtree.searchElement(capacityConstraint);
-        // if there exist a lot with given capacity constraint, then return it
-        if (parkingLot != null && parkingLot.getAvailability()) {
-            return parkingLot;
+    static ParkingLot findLowerAvailableLot(LotIndex AVLtree, long capacityConstraint) {
+
+        // one walk finds the lot with the given capacity constraint or else the nearest smaller one
+        ParkingLot parkingLot = AVLtree.findFloorElement(capacityConstraint);
+        // a lot with exactly the given capacity constraint that is full leaves the nearest smaller one to check
+        if (parkingLot != null && !parkingLot.getAvailability()
+                && parkingLot.getCapacityConstraint() == capacityConstraint) {
+            parkingLot = findHighestSmallerElement(AVLtree, capacityConstraint);
         }
-
-        // Use the helper function to get the highest smaller element directly
-        parkingLot = findHighestSmallerElement(AVLtree, capacityConstraint);
         if(parkingLot != null && parkingLot.getAvailability()){
             return parkingLot;
         }
@@ -47,27 +46,8 @@ public class Methods {
      * @return The ParkingLot with the largest capacity constraint less than the specified constraint,
      *         or null if no such parking lot exists
      */
-    static ParkingLot findHighestSmallerElement(MyAvlTree AVLtree, long capacityConstraint) {
-        Node current = AVLtree.getRootNode(); // Start search from the root node
-        Node predecessor = null; // Initialize predecessor node to track the highest smaller element
-
-        while (current != null) {
-            // If current node's capacity is smaller, update predecessor and move right
-            if (capacityConstraint > current.element.getCapacityConstraint()) {
-                predecessor = current;
-                current = current.rightChild;
-            }
-            // Otherwise, move to the left child
-            else {
-                current = current.leftChild;
-            }
-        }
-        if (predecessor != null){
-            return predecessor.element;
-        }
-        else{
-            return null;
-        }
+    static ParkingLot findHighestSmallerElement(LotIndex AVLtree, long capacityConstraint) {
+        return AVLtree.findHighestSmallerElement(capacityConstraint);
     }
 
 
@@ -80,15 +60,14 @@ public class Methods {
      * @return A parking lot with the smallest capacity constraint above the specified constraint
      *         and has trucks waiting, or null if no such lot is found
      */
-    static ParkingLot findUpperAvailableLot(MyAvlTree AVLtree, long capacityConstraint) {
+    static ParkingLot findUpperAvailableLot(LotIndex AVLtree, long capacityConstraint) {
 
-        ParkingLot parkingLot = AVLtree.searchElement(capacityConstraint);
-
-        if (parkingLot != null && parkingLot.getTruckNumberInWaiting() > 0) {
-            return parkingLot;
+        ParkingLot parkingLot = AVLtree.findCeilingElement(capacityConstraint);
+        // a lot with exactly the given capacity constraint but no waiting trucks leaves the nearest larger one to check
+        if (parkingLot != null && parkingLot.getTruckNumberInWaiting() == 0
+                && parkingLot.getCapacityConstraint() == capacityConstraint) {
+            parkingLot = findLeastBiggerElement(AVLtree, capacityConstraint);
         }
-        // Use the helper function to get the least big element directly
-        parkingLot = findLeastBiggerElement(AVLtree, capacityConstraint);
         if(parkingLot != null && parkingLot.getTruckNumberInWaiting()>0){
             return parkingLot;
         }
@@ -104,16 +83,8 @@ public class Methods {
      * @return A parking lot with the smallest capacity constraint greater than or equal to the specified constraint,
      *         or null if no such lot is found
      */
-    static ParkingLot findUpperAvailableLotForLoad(MyAvlTree AVLtree, long capacityConstraint) {
-        ParkingLot parkingLot = AVLtree.searchElement(capacityConstraint);
-
-        if (parkingLot != null) {
-            return parkingLot;
-        }
-
-        // Use the helper function to get the least big element directly
-        parkingLot = findLeastBiggerElement(AVLtree, capacityConstraint);
-        return parkingLot;
+    static ParkingLot findUpperAvailableLotForLoad(LotIndex AVLtree, long capacityConstraint) {
+        return AVLtree.findCeilingElement(capacityConstraint);
     }
 
     /**
@@ -125,28 +96,8 @@ public class Methods {
      * @return The ParkingLot with the smallest capacity constraint greater than the specified constraint,
      *         or null if no such parking lot exists
      */
-    static ParkingLot findLeastBiggerElement(MyAvlTree AVLtree, long capacityConstraint) {
-        Node current = AVLtree.getRootNode();
-        Node successor = null;
-        // Traverse the AVL tree to find the least big element
-        while (current != null) {
-            // If current node's capacity is greater than the specified constraint, update successor and move left
-            if (capacityConstraint < current.element.getCapacityConstraint()) {
-                successor = current;
-                current = current.leftChild;
-            }
-            // Otherwise, move to the right child
-            else {
-                current = current.rightChild;
-            }
-        }
-        // Return the successor's element if found, otherwise return null
-        if(successor != null){
-            return successor.element;
-        }
-        else {
-            return null;
-        }
+    static ParkingLot findLeastBiggerElement(LotIndex AVLtree, long capacityConstraint) {
+        return AVLtree.findLeastBiggerElement(capacityConstraint);
     }
 
     /**
@@ -157,17 +108,20 @@ public class Methods {
      * @param availableAVLtree The AVL tree of available parking lots
      * @param readyParkingLots The AVL tree of parking lots that have truck in waiting
      * @param truck The truck to be added to the parking lot
-     * @param outputFile The FileWriter object to write output results
+     * @param placementPolicy The policy that selects the parking lot for the truck
+     * @param outputFile The ResultSink that the results are written to
      * @throws IOException If an I/O error occurs while writing to the file
      */
-    static void addToParkingLot(MyAvlTree availableAVLtree, MyAvlTree readyParkingLots, Truck truck, FileWriter outputFile) throws IOException {
+    static void addToParkingLot(LotIndex availableAVLtree, LotIndex readyParkingLots, Truck truck,
+                                PlacementPolicy placementPolicy, ResultSink outputFile) throws IOException {
         long capacityConstraint = truck.getCapacityConstraint();
 
-        // finds the lot with at most given capacity constraint, if there is no null is returned
-        ParkingLot availableLot = findLowerAvailableLot(availableAVLtree, capacityConstraint);
+        // with the default policy, finds the lot with at most given capacity constraint, if there is no null is returned
+        ParkingLot availableLot = placementPolicy.selectLot(availableAVLtree, capacityConstraint);
 
         if (availableLot == null) {
-            outputFile.write("-1" + "\n");
+            outputFile.record(Action.ADD_TRUCK, truck.getId(), ResultSink.FAILED);
+            outputFile.endLine();
             return;
         }
         boolean isWaitingEmpty = (availableLot.getTruckNumberInWaiting() == 0);
@@ -182,7 +136,8 @@ public class Methods {
             availableAVLtree.deleteElement(availableLot.getCapacityConstraint());
         }
         // <capacity constraint> format
-        outputFile.write(availableLot.getCapacityConstraint() + "\n");
+        outputFile.record(Action.ADD_TRUCK, truck.getId(), availableLot.getCapacityConstraint());
+        outputFile.endLine();
     }
 
 
@@ -194,18 +149,20 @@ public class Methods {
      * @param availableAVLtree The AVL tree of available parking lots
      * @param readyParkingLots The AVL tree of parking lots that have truck in waiting section
      * @param truck The truck to be added to the parking lot
-     * @param outputFile The FileWriter object to write output results
+     * @param placementPolicy The policy that selects the parking lot for the truck
+     * @param outputFile The ResultSink that the results are written to
      * @throws IOException If an I/O error occurs while writing to the file
      */
-    static void addToParkingLotFromLoad(MyAvlTree availableAVLtree, MyAvlTree readyParkingLots, Truck truck, FileWriter outputFile) throws IOException {
+    static void addToParkingLotFromLoad(LotIndex availableAVLtree, LotIndex readyParkingLots, Truck truck,
+                                        PlacementPolicy placementPolicy, ResultSink outputFile) throws IOException {
         long capacityConstraint = truck.getCapacityConstraint();
 
-        // finds the lot with at most given capacity constraint
+        // with the default policy, finds the lot with at most given capacity constraint
         // if there is no lot found, then null is returned
-        ParkingLot availableLot = findLowerAvailableLot(availableAVLtree, capacityConstraint);
+        ParkingLot availableLot = placementPolicy.selectLot(availableAVLtree, capacityConstraint);
 
         if (availableLot == null) {
-            outputFile.write(truck.getId() + " -1");
+            outputFile.record(Action.LOAD, truck.getId(), ResultSink.FAILED);
             return;
         }
         boolean isWaitingEmpty = availableLot.getTruckNumberInWaiting() == 0;
@@ -221,7 +178,7 @@ public class Methods {
         }
 
         // <id> <capacity constraint> format
-        outputFile.write(truck.getId() + " " + availableLot.getCapacityConstraint());
+        outputFile.record(Action.LOAD, truck.getId(), availableLot.getCapacityConstraint());
     }
 
     /**
@@ -233,17 +190,18 @@ public class Methods {
      * @param readyParkingLots The AVL tree of parking lots that have truck in waiting section
      * @param readyToLoadParkingLots The AVL tree of parking lots with trucks ready to be loaded
      * @param capacityConstraint The minimum capacity constraint for the parking lot
-     * @param outputFile The FileWriter object to write output results
+     * @param outputFile The ResultSink that the results are written to
      * @throws IOException If an I/O error occurs while writing to the file
      */
-    public static void transferToReady(MyAvlTree readyParkingLots,
-                                       MyAvlTree readyToLoadParkingLots,
+    public static void transferToReady(LotIndex readyParkingLots,
+                                       LotIndex readyToLoadParkingLots,
                                        long capacityConstraint,
-                                       FileWriter outputFile) throws IOException {
+                                       ResultSink outputFile) throws IOException {
         // finds lot that has at least given capacity constraint, if there is no then null
         ParkingLot availableLot = findUpperAvailableLot(readyParkingLots, capacityConstraint);
         if (availableLot == null) {
-            outputFile.write("-1" + "\n");
+            outputFile.record(Action.READY, ResultSink.NO_TRUCK, ResultSink.FAILED);
+            outputFile.endLine();
             return;
         }
         boolean doesAlreadyHaveReady = availableLot.getTruckNumberInReady() > 0;
@@ -258,7 +216,113 @@ public class Methods {
             readyParkingLots.deleteElement(availableLot.getCapacityConstraint());
         }
         // writes <id> <capacity constraint>
-        outputFile.write(transferredTruck.getId() + " " + availableLot.getCapacityConstraint() + "\n");
+        outputFile.record(Action.READY, transferredTruck.getId(), availableLot.getCapacityConstraint());
+        outputFile.endLine();
+    }
+
+    /**
+     * Adds trucks of the same capacity, with the same results as an add_truck action for each of them.
+     * If the placement policy keeps choosing a lot until it is full, the lot is selected once, filled with
+     * as many of the trucks as it can take, and its tree memberships are updated once. Otherwise every
+     * truck is placed on its own. Each truck's result is written on its own line with its own action index.
+     *
+     * @param availableAVLtree The AVL tree of available parking lots
+     * @param readyParkingLots The AVL tree of parking lots that have truck in waiting
+     * @param capacity The capacity of the trucks
+     * @param ids Array holding the ids of the trucks
+     * @param offset Index of the first id in the array
+     * @param count Number of trucks
+     * @param placementPolicy The policy that selects the parking lots for the trucks
+     * @param outputFile The ResultSink that the results are written to
+     * @param firstActionIndex Action index of the first truck, the others follow it
+     * @throws IOException If an I/O error occurs while writing to the file
+     */
+    static void addTrucksToParkingLot(LotIndex availableAVLtree, LotIndex readyParkingLots, long capacity,
+                                      long[] ids, int offset, int count, PlacementPolicy placementPolicy,
+                                      ResultSink outputFile, long firstActionIndex) throws IOException {
+        if (!placementPolicy.selectsUntilFull()) {
+            for (int i = 0; i < count; i++) {
+                outputFile.beginAction(firstActionIndex + i);
+                addToParkingLot(availableAVLtree, readyParkingLots, new Truck(ids[offset + i], capacity),
+                        placementPolicy, outputFile);
+            }
+            return;
+        }
+        Truck[] trucks = new Truck[count];
+        for (int i = 0; i < count; i++) {
+            trucks[i] = new Truck(ids[offset + i], capacity);
+        }
+        int placed = 0;
+        while (placed < count) {
+            ParkingLot availableLot = placementPolicy.selectLot(availableAVLtree, capacity);
+            if (availableLot == null) {
+                break; // nothing changes between the remaining trucks, so none of them can be placed
+            }
+            boolean isWaitingEmpty = availableLot.getTruckNumberInWaiting() == 0;
+            int added = availableLot.addTrucks(trucks, placed, count - placed);
+            if (isWaitingEmpty) {
+                readyParkingLots.insertElement(availableLot);
+            }
+            if (!availableLot.getAvailability()) {
+                availableAVLtree.deleteElement(availableLot.getCapacityConstraint());
+            }
+            for (int i = placed; i < placed + added; i++) {
+                outputFile.beginAction(firstActionIndex + i);
+                outputFile.record(Action.ADD_TRUCK, trucks[i].getId(), availableLot.getCapacityConstraint());
+                outputFile.endLine();
+            }
+            placed += added;
+        }
+        for (int i = placed; i < count; i++) {
+            outputFile.beginAction(firstActionIndex + i);
+            outputFile.record(Action.ADD_TRUCK, trucks[i].getId(), ResultSink.FAILED);
+            outputFile.endLine();
+        }
+    }
+
+    /**
+     * Makes trucks ready, with the same results as the given number of ready actions. The lot found for the
+     * capacity constraint keeps being chosen until its waiting section is empty, so all trucks it can give
+     * are moved to its ready section at once and its tree memberships are updated once.
+     * Each truck's result is written on its own line with its own action index.
+     *
+     * @param readyParkingLots The AVL tree of parking lots that have truck in waiting section
+     * @param readyToLoadParkingLots The AVL tree of parking lots with trucks ready to be loaded
+     * @param capacityConstraint The minimum capacity constraint for the parking lot
+     * @param count Number of ready actions
+     * @param outputFile The ResultSink that the results are written to
+     * @param firstActionIndex Action index of the first ready action, the others follow it
+     * @throws IOException If an I/O error occurs while writing to the file
+     */
+    static void transferToReady(LotIndex readyParkingLots, LotIndex readyToLoadParkingLots, long capacityConstraint,
+                                long count, ResultSink outputFile, long firstActionIndex) throws IOException {
+        Truck[] moved = new Truck[(int) Math.min(count, 4096)];
+        long done = 0;
+        while (done < count) {
+            ParkingLot availableLot = findUpperAvailableLot(readyParkingLots, capacityConstraint);
+            if (availableLot == null) {
+                break; // the remaining ready actions fail as well
+            }
+            boolean doesAlreadyHaveReady = availableLot.getTruckNumberInReady() > 0;
+            int movedCount = availableLot.moveToReady((int) Math.min(count - done, moved.length), moved);
+            if (!doesAlreadyHaveReady) {
+                readyToLoadParkingLots.insertElement(availableLot);
+            }
+            if (availableLot.getTruckNumberInWaiting() == 0) {
+                readyParkingLots.deleteElement(availableLot.getCapacityConstraint());
+            }
+            for (int i = 0; i < movedCount; i++) {
+                outputFile.beginAction(firstActionIndex + done + i);
+                outputFile.record(Action.READY, moved[i].getId(), availableLot.getCapacityConstraint());
+                outputFile.endLine();
+            }
+            done += movedCount;
+        }
+        for (; done < count; done++) {
+            outputFile.beginAction(firstActionIndex + done);
+            outputFile.record(Action.READY, ResultSink.NO_TRUCK, ResultSink.FAILED);
+            outputFile.endLine();
+        }
     }
 
     /**
@@ -269,16 +333,19 @@ public class Methods {
      * @param availabelAVLtree AVL tree containing available parking lots, i.e. lots that can take truck
      * @param readyParkingLots AVL tree of parking lots that have truck in waiting
      * @param readyToLoadParkingLots AVL tree of parking lots ready to load trucks
+     * @param placementPolicy The policy that selects the parking lots that loaded trucks return to
      * @param capacityConstraint The capacity constraint of parking lot to be used
      * @param loadAmount The total load to be distributed across trucks
-     * @param outputFile FileWriter object to write output results
+     * @param outputFile The ResultSink that the results are written to
+     * @return The amount of load that was distributed
      * @throws IOException If an I/O error occurs while writing to the file
      */
-    public static void loadToTrucks(MyAvlTree availabelAVLtree,
-                                    MyAvlTree readyParkingLots,
-                                    MyAvlTree readyToLoadParkingLots,
+    public static long loadToTrucks(LotIndex availabelAVLtree,
+                                    LotIndex readyParkingLots,
+                                    LotIndex readyToLoadParkingLots,
+                                    PlacementPolicy placementPolicy,
                                     long capacityConstraint,
-                                    long loadAmount, FileWriter outputFile) throws IOException {
+                                    long loadAmount, ResultSink outputFile) throws IOException {
         // assigned to remaining load to check if at least some of them is distributed at the end
         long remainingLoad = loadAmount;
         while (true) {
@@ -306,11 +373,6 @@ public class Methods {
                 if (availableLot.getTruckNumberInReady() == 0) {
                     readyToLoadParkingLots.deleteElement(availableLot.getCapacityConstraint());
                 }
-                // to write in <> - <> format
-                if (remainingLoad != loadAmount) {
-                    outputFile.write(" - ");
-                }
-
                 // Check if the remaining load exceeds the capacity of the available lot
                 if (remainingLoad > availableLot.getCapacityConstraint()) {
                     remainingLoad -= availableLot.getCapacityConstraint();
@@ -322,7 +384,7 @@ public class Methods {
                         currentReadyTruck.unloadTruck();
                     }
                     // Add the truck back to a suitable parking lot after loading
-                    addToParkingLotFromLoad(availabelAVLtree, readyParkingLots, currentReadyTruck, outputFile);
+                    addToParkingLotFromLoad(availabelAVLtree, readyParkingLots, currentReadyTruck, placementPolicy, outputFile);
                 } else {
                     currentReadyTruck.receiveLoad(remainingLoad);
                     // If the truck's capacity is fully utilized, unload it
@@ -332,7 +394,7 @@ public class Methods {
                     // Set remaining load to zero, as it's now fully distributed
                     remainingLoad = 0;
                     // Add the truck back to a suitable parking lot after loading
-                    addToParkingLotFromLoad(availabelAVLtree, readyParkingLots, currentReadyTruck, outputFile);
+                    addToParkingLotFromLoad(availabelAVLtree, readyParkingLots, currentReadyTruck, placementPolicy, outputFile);
                     // Exit the loop since the load has been fully distributed
                     break;
                 }
@@ -341,10 +403,10 @@ public class Methods {
         }
         // to write in the given format
         if (loadAmount == remainingLoad) {
-            outputFile.write("-1\n");
-        } else {
-            outputFile.write("\n");
+            outputFile.record(Action.LOAD, ResultSink.NO_TRUCK, ResultSink.FAILED);
         }
+        outputFile.endLine();
+        return loadAmount - remainingLoad;
     }
 
     /**
@@ -354,33 +416,7 @@ public class Methods {
      * @param capacityConstraint The capacity constraint to compare against
      * @return The total number of trucks in parking lots with larger capacities
      */
-    public static long countTrucksInLargerLots(MyAvlTree parkingLots, long capacityConstraint) {
-        return countTrucksInLargerLots(parkingLots.getRootNode(), capacityConstraint);
-    }
-
-    /**
-     * Helper method to recursively count trucks in parking lots that have a capacity greater than the specified constraint.
-     *
-     * @param node The current node in the AVL tree
-     * @param capacityConstraint The capacity constraint to compare against
-     * @return The total number of trucks in parking lots with capacities larger than the constraint
-     */
-    private static long countTrucksInLargerLots(Node node, long capacityConstraint) {
-        // if empty then truck number is zero
-        if (node == null) {
-            return 0;
-        }
-        long totalTruckNumber = 0;
-        if (node.element.getCapacityConstraint() > capacityConstraint) {
-            // this statement ensures that we take trucks from lots that have higher capacity constraint from the given
-            totalTruckNumber += node.element.getTruckNumberInReady();
-            totalTruckNumber += node.element.getTruckNumberInWaiting();
-        }
-
-        // Traverse both left and right subtrees
-        totalTruckNumber += countTrucksInLargerLots(node.leftChild, capacityConstraint); // left subtree truck number
-        totalTruckNumber += countTrucksInLargerLots(node.rightChild, capacityConstraint); // right subtree truck number
-
-        return totalTruckNumber;
+    public static long countTrucksInLargerLots(LotIndex parkingLots, long capacityConstraint) {
+        return parkingLots.countTrucksInLargerLots(capacityConstraint);
     }
 }
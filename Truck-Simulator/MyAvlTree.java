@@ -1,8 +1,10 @@
+import java.util.function.Consumer;
 
 // created Node class to design the structure of the AVL Tree Node
 class Node
 {
     ParkingLot element; // parking lot will be kept in the node as an element
+    long key;           // capacity constraint of the element, kept here so comparisons do not go through the lot table
     int h;  //for height
     Node leftChild;
     Node rightChild;
@@ -21,25 +23,67 @@ class Node
         leftChild = null;
         rightChild = null;
         this.element = element;
+        key = element.getCapacityConstraint();
         h = 0;
     }
 }
 
-class MyAvlTree
+// node of a tree that tracks occupancy, only such trees pay for the aggregates of the subtrees
+class OccupancyNode extends Node
 {
+    long maxFreeSlots;     // largest number of free slots among the lots of the subtree
+    long minTruckNumber;   // smallest number of trucks among the available lots of the subtree
+
+    public OccupancyNode(ParkingLot element)
+    {
+        super(element);
+    }
+}
+
+class MyAvlTree implements LotIndex
+{
+    private static final int MAX_HEIGHT = 128;  // bound on the height of any AVL tree that fits in memory
+
     private Node rootNode;
+    private int size;  // number of nodes in the tree
+    // when true, nodes keep the occupancy aggregates of their subtrees, which findBestLot() relies on
+    private final boolean tracksOccupancy;
+    private Node[] rightBoundary;  // buffers for the boundary paths walked by findBestLot()
+    private Node[] leftBoundary;
+    // the finger: the last node reached by a floor or ceiling query, with its nearest smaller and larger
+    // ancestors, which bound the keys of its subtree; null when the tree changed since the last query
+    private Node finger;
+    private Node fingerLower;
+    private Node fingerUpper;
+    // the neighbours of the capacity constraint of the last query when it has no lot
+    private Node lowerNeighbour;
+    private Node upperNeighbour;
+
     public Node getRootNode(){
         return rootNode;
     }
 
     //Constructor to set null value to the rootNode
     public MyAvlTree()
+    {
+        this(false);
+    }
+
+    // Constructor for a tree that can keep occupancy aggregates for findBestLot()
+    public MyAvlTree(boolean tracksOccupancy)
     {
         rootNode = null;
+        this.tracksOccupancy = tracksOccupancy;
+        if (tracksOccupancy) {
+            rightBoundary = new Node[MAX_HEIGHT];
+            leftBoundary = new Node[MAX_HEIGHT];
+        }
     }
 
+    @Override
     public void insertElement(ParkingLot element)
     {
+        finger = null; // rotations may move the node of the finger
         rootNode = insertElement(element, rootNode);
     }
 
@@ -47,30 +91,33 @@ class MyAvlTree
     private Node insertElement(ParkingLot element, Node node)
     {
 
-        if (node == null) node = new Node(element);
+        if (node == null) {
+            node = newNode(element);
+            size++;
+        }
 
         // Check if the given element's capacity constraint is less than the current node's element's capacity
         // This means the element should be inserted into the left subtree
-        else if (element.getCapacityConstraint() < node.element.getCapacityConstraint())
+        else if (element.getCapacityConstraint() < node.key)
         {
             // Recursively call insertElement to find the correct position in the left subtree
             node.leftChild = insertElement(element, node.leftChild);
 
             // Check for imbalance in the tree after insertion in the left subtree
             if( getHeight(node.leftChild) - getHeight(node.rightChild ) == 2 )
-                if( element.getCapacityConstraint() < node.leftChild.element.getCapacityConstraint())
+                if( element.getCapacityConstraint() < node.leftChild.key)
                     node = rotateWithLeftChild(node);
                 else
                     node = doubleWithLeftChild(node);
         }
         // If the given element's capacity constraint is greater than the current node's element's capacity
         // This means the element should be inserted into the right subtree
-        else if(element.getCapacityConstraint() > node.element.getCapacityConstraint())
+        else if(element.getCapacityConstraint() > node.key)
         {
             // Recursively call insertElement to find the correct position in the right subtree
             node.rightChild = insertElement(element, node.rightChild);
             if(getHeight( node.rightChild) - getHeight(node.leftChild) == 2 )
-                if(element.getCapacityConstraint() > node.rightChild.element.getCapacityConstraint())
+                if(element.getCapacityConstraint() > node.rightChild.key)
                     node = rotateWithRightChild(node);
                 else
                     node = doubleWithRightChild(node);
@@ -78,6 +125,7 @@ class MyAvlTree
         else
             ;  // if the element is already present in the tree, we will do nothing
         node.h = getMaxHeight(getHeight( node.leftChild ), getHeight(node.rightChild)) + 1;
+        updateAggregates(node);
 
         return node;
 
@@ -112,8 +160,10 @@ class MyAvlTree
         node1.rightChild = node2;
         // Update the height of node2 based on its new children
         node2.h = getMaxHeight(getHeight(node2.leftChild), getHeight(node2.rightChild)) + 1;
+        updateAggregates(node2);
         // Update the height of node1 based on its new children
         node1.h = getMaxHeight(getHeight(node1.leftChild), node2.h) + 1;
+        updateAggregates(node1);
 
         // Return node1 as the new root of this rotated subtree
         return node1;
@@ -128,8 +178,10 @@ class MyAvlTree
         node2.leftChild = node1;
         // Update the height of node1 based on its new children
         node1.h = getMaxHeight(getHeight(node1.leftChild), getHeight(node1.rightChild)) + 1;
+        updateAggregates(node1);
         // Update the height of node2 based on its new children
         node2.h = getMaxHeight(getHeight(node2.rightChild), node1.h) + 1;
+        updateAggregates(node2);
 
         // Return node2 as the new root of this rotated subtree
         return node2;
@@ -153,6 +205,7 @@ class MyAvlTree
 
     //created searchElement() method to find an element in the AVL Tree
 
+    @Override
     public ParkingLot searchElement(long capacityConstraint)
     {
         return searchElement(rootNode, capacityConstraint);
@@ -161,11 +214,11 @@ class MyAvlTree
     private ParkingLot searchElement(Node head, long capacityConstraint) {
         while (head != null) { // Traverse until reaching a null node
             // If the capacity constraint is less than the current node's constraint, go to the left child
-            if (capacityConstraint < head.element.getCapacityConstraint()) {
+            if (capacityConstraint < head.key) {
                 head = head.leftChild;
             }
             // If the capacity constraint is greater than the current node's constraint, go to the right child
-            else if (capacityConstraint > head.element.getCapacityConstraint()) {
+            else if (capacityConstraint > head.key) {
                 head = head.rightChild;
             }
             // If the capacity constraint matches the current node's constraint, return the element
@@ -178,7 +231,9 @@ class MyAvlTree
 
 
     // Method to delete an element from the AVL Tree
+    @Override
     public void deleteElement(long capacityConstraint) {
+        finger = null;
         rootNode = deleteElement(rootNode, capacityConstraint);
     }
 
@@ -188,15 +243,16 @@ class MyAvlTree
             return null; // Element not found, return null
         }
         // find the correct node to delete
-        if (capacityConstraint < node.element.getCapacityConstraint()) {
+        if (capacityConstraint < node.key) {
             node.leftChild = deleteElement(node.leftChild, capacityConstraint);
-        } else if (capacityConstraint > node.element.getCapacityConstraint()) {
+        } else if (capacityConstraint > node.key) {
             node.rightChild = deleteElement(node.rightChild, capacityConstraint);
         } else {
             // Node with the matching capacity constraint found, perform deletion
 
             // Case 1: Node has at most one child
             if (node.leftChild == null || node.rightChild == null) {
+                size--;
                 if(node.leftChild != null){
                     node = node.leftChild;
                 }
@@ -209,7 +265,8 @@ class MyAvlTree
                 // Find the in-order successor (smallest element in the right subtree)
                 Node successor = findMin(node.rightChild);
                 node.element = successor.element; // Copy the in-order successor's data to this node
-                node.rightChild = deleteElement(node.rightChild, successor.element.getCapacityConstraint());
+                node.key = successor.key;
+                node.rightChild = deleteElement(node.rightChild, successor.key);
             }
         }
 
@@ -219,6 +276,7 @@ class MyAvlTree
 
         // Update the height of the current node
         node.h = getMaxHeight(getHeight(node.leftChild), getHeight(node.rightChild)) + 1;
+        updateAggregates(node);
 
         // Rebalance the node if necessary
         int balance = getHeight(node.leftChild) - getHeight(node.rightChild);
@@ -258,6 +316,406 @@ class MyAvlTree
         return node;
     }
 
+    // creates the node of a lot, with room for the occupancy aggregates only if the tree keeps them
+    private Node newNode(ParkingLot element) {
+        return tracksOccupancy ? new OccupancyNode(element) : new Node(element);
+    }
+
+    // recomputes the occupancy aggregates of a node from its element and children
+    private void updateAggregates(Node node) {
+        if (!tracksOccupancy) {
+            return;
+        }
+        long maxFreeSlots = node.element.getFreeSlots();
+        long minTruckNumber = node.element.getAvailability()
+                ? node.element.getTruckNumberInWaiting() + node.element.getTruckNumberInReady()
+                : Long.MAX_VALUE;  // lots that cannot take a truck never count as least loaded
+        if (node.leftChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((OccupancyNode) node.leftChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((OccupancyNode) node.leftChild).minTruckNumber);
+        }
+        if (node.rightChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((OccupancyNode) node.rightChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((OccupancyNode) node.rightChild).minTruckNumber);
+        }
+        ((OccupancyNode) node).maxFreeSlots = maxFreeSlots;
+        ((OccupancyNode) node).minTruckNumber = minTruckNumber;
+    }
+
+    // trees that track occupancy keep aggregates of the lots' truck numbers, which refresh() updates
+    @Override
+    public boolean cachesOccupancy() {
+        return tracksOccupancy;
+    }
+
+    // Method to update the occupancy aggregates after the trucks of the lot with the given constraint changed
+    @Override
+    public void refresh(long capacityConstraint) {
+        if (tracksOccupancy) {
+            refresh(rootNode, capacityConstraint);
+        }
+    }
+
+    // Helper method that recomputes the aggregates on the path to the lot, bottom up
+    private void refresh(Node node, long capacityConstraint) {
+        if (node == null) {
+            return;
+        }
+        if (capacityConstraint < node.key) {
+            refresh(node.leftChild, capacityConstraint);
+        } else if (capacityConstraint > node.key) {
+            refresh(node.rightChild, capacityConstraint);
+        }
+        updateAggregates(node);
+    }
+
+    // score of a single lot, a higher score is better
+    private long score(ParkingLot lot, int scoring) {
+        if (scoring == FREE_SLOTS) {
+            return lot.getFreeSlots();
+        }
+        return lot.getAvailability() ? -(lot.getTruckNumberInWaiting() + lot.getTruckNumberInReady()) : -Long.MAX_VALUE;
+    }
+
+    // best score in a subtree
+    private long bestScore(Node node, int scoring) {
+        if (node == null) {
+            return -Long.MAX_VALUE;
+        }
+        OccupancyNode aggregates = (OccupancyNode) node;
+        return scoring == FREE_SLOTS ? aggregates.maxFreeSlots : -aggregates.minTruckNumber;
+    }
+
+    /**
+     * Finds the available lot with the best score among the lots whose capacity constraint is in [low, high].
+     * Ties go to the lot with the larger capacity constraint. The tree must track occupancy.
+     * The lots in the range are covered by the two boundary paths below the node where the paths to low and
+     * high split, so both finding the best score and locating its lot take O(log n).
+     *
+     * @param low     Smallest capacity constraint of the range
+     * @param high    Largest capacity constraint of the range
+     * @param scoring FREE_SLOTS to prefer lots with more free slots, LOAD to prefer lots with fewer trucks
+     * @return The best lot in the range, or null if no lot in the range can take a truck
+     */
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findBestLot(low, high, scoring);
+        }
+        // find the highest node inside the range
+        Node split = rootNode;
+        while (split != null && (split.key < low || split.key > high)) {
+            split = split.key < low ? split.rightChild : split.leftChild;
+        }
+        if (split == null) {
+            return null;
+        }
+        long target = score(split.element, scoring);
+
+        // nodes inside the range on the path towards high, their left subtrees are completely inside the range
+        int rightCount = 0;
+        for (Node node = split.rightChild; node != null; ) {
+            if (node.key <= high) {
+                rightBoundary[rightCount++] = node;
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.leftChild, scoring)));
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        // nodes inside the range on the path towards low, their right subtrees are completely inside the range
+        int leftCount = 0;
+        for (Node node = split.leftChild; node != null; ) {
+            if (node.key >= low) {
+                leftBoundary[leftCount++] = node;
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.rightChild, scoring)));
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        if (target == -Long.MAX_VALUE || (scoring == FREE_SLOTS && target <= 0)) {
+            return null; // no lot in the range can take a truck
+        }
+
+        // visit the candidates from the largest capacity constraint to the smallest, the first match is the answer
+        for (int i = rightCount - 1; i >= 0; i--) {
+            Node node = rightBoundary[i];
+            if (score(node.element, scoring) >= target) {
+                return node.element;
+            }
+            if (bestScore(node.leftChild, scoring) >= target) {
+                return findRightmostWithScore(node.leftChild, target, scoring);
+            }
+        }
+        if (score(split.element, scoring) >= target) {
+            return split.element;
+        }
+        for (int i = 0; i < leftCount; i++) {
+            Node node = leftBoundary[i];
+            if (bestScore(node.rightChild, scoring) >= target) {
+                return findRightmostWithScore(node.rightChild, target, scoring);
+            }
+            if (score(node.element, scoring) >= target) {
+                return node.element;
+            }
+        }
+        return null;
+    }
+
+    // finds the lot with the largest capacity constraint whose score reaches the target in a subtree that has one
+    private ParkingLot findRightmostWithScore(Node node, long target, int scoring) {
+        while (true) {
+            if (bestScore(node.rightChild, scoring) >= target) {
+                node = node.rightChild;
+            } else if (score(node.element, scoring) >= target) {
+                return node.element;
+            } else {
+                node = node.leftChild;
+            }
+        }
+    }
+
+
+    /**
+     * Finds the available lot with the smallest capacity constraint in [low, high]. A tree that tracks occupancy
+     * skips every subtree without free slots, so the walk follows the paths to low and high and descends into at
+     * most one subtree inside the range, in O(log n).
+     *
+     * @param low  Smallest capacity constraint of the range
+     * @param high Largest capacity constraint of the range
+     * @return The first lot in the range that can take a truck, or null if there is none
+     */
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findFirstAvailableLot(low, high);
+        }
+        Node node = findFirstAvailable(rootNode, low, high);
+        return node != null ? node.element : null;
+    }
+
+    // Helper method that finds the leftmost node in the range whose lot has free slots
+    private Node findFirstAvailable(Node node, long low, long high) {
+        if (node == null || ((OccupancyNode) node).maxFreeSlots <= 0) {
+            return null; // no lot of the subtree can take a truck
+        }
+        if (node.key < low) {
+            return findFirstAvailable(node.rightChild, low, high);
+        }
+        if (node.key > high) {
+            return findFirstAvailable(node.leftChild, low, high);
+        }
+        Node found = findFirstAvailable(node.leftChild, low, high);
+        if (found == null && node.element.getFreeSlots() > 0) {
+            found = node;
+        }
+        return found != null ? found : findFirstAvailable(node.rightChild, low, high);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the node in the AVL tree with the largest capacity constraint that is less than
+     * the specified capacity constraint. This node is considered the "highest smaller" element.
+     *
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The ParkingLot with the largest capacity constraint less than the specified constraint,
+     *         or null if no such parking lot exists
+     */
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        Node current = rootNode; // Start search from the root node
+        Node predecessor = null; // Initialize predecessor node to track the highest smaller element
+
+        while (current != null) {
+            // If current node's capacity is smaller, update predecessor and move right
+            if (capacityConstraint > current.key) {
+                predecessor = current;
+                current = current.rightChild;
+            }
+            // Otherwise, move to the left child
+            else {
+                current = current.leftChild;
+            }
+        }
+        if (predecessor != null){
+            return predecessor.element;
+        }
+        else{
+            return null;
+        }
+    }
+
+    /**
+     * Finds the node in the AVL tree with the smallest capacity constraint greater than
+     * the specified capacity constraint. This node is considered the "least bigger" element.
+     *
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The ParkingLot with the smallest capacity constraint greater than the specified constraint,
+     *         or null if no such parking lot exists
+     */
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        Node current = rootNode;
+        Node successor = null;
+        // Traverse the AVL tree to find the least big element
+        while (current != null) {
+            // If current node's capacity is greater than the specified constraint, update successor and move left
+            if (capacityConstraint < current.key) {
+                successor = current;
+                current = current.leftChild;
+            }
+            // Otherwise, move to the right child
+            else {
+                current = current.rightChild;
+            }
+        }
+        // Return the successor's element if found, otherwise return null
+        if(successor != null){
+            return successor.element;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Walks to the given capacity constraint in one pass. The walk starts at the finger instead of the root
+     * when the finger's subtree can hold the constraint, so a query repeating the last one takes no step.
+     * If there is no lot with the constraint, its neighbours are left in lowerNeighbour and upperNeighbour.
+     *
+     * @param capacityConstraint The capacity constraint to look for
+     * @return The node with the capacity constraint, or null
+     */
+    private Node locate(long capacityConstraint) {
+        Node current = rootNode;
+        Node lower = null;
+        Node upper = null;
+        if (finger != null && (fingerLower == null || fingerLower.key < capacityConstraint)
+                && (fingerUpper == null || capacityConstraint < fingerUpper.key)) {
+            current = finger;
+            lower = fingerLower;
+            upper = fingerUpper;
+        }
+        while (current != null) {
+            finger = current;
+            fingerLower = lower;
+            fingerUpper = upper;
+            if (capacityConstraint == current.key) {
+                return current;
+            }
+            if (capacityConstraint < current.key) {
+                upper = current;
+                current = current.leftChild;
+            } else {
+                lower = current;
+                current = current.rightChild;
+            }
+        }
+        lowerNeighbour = lower;
+        upperNeighbour = upper;
+        return null;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        Node node = locate(capacityConstraint);
+        if (node == null) {
+            node = lowerNeighbour;
+        }
+        return node != null ? node.element : null;
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        Node node = locate(capacityConstraint);
+        if (node == null) {
+            node = upperNeighbour;
+        }
+        return node != null ? node.element : null;
+    }
+
+    /**
+     * Counts the total number of trucks in parking lots with a capacity greater than the specified constraint.
+     *
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The total number of trucks in parking lots with larger capacities
+     */
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        return countTrucksInLargerLots(rootNode, capacityConstraint);
+    }
+
+    /**
+     * Helper method to recursively count trucks in parking lots that have a capacity greater than the specified constraint.
+     *
+     * @param node The current node in the AVL tree
+     * @param capacityConstraint The capacity constraint to compare against
+     * @return The total number of trucks in parking lots with capacities larger than the constraint
+     */
+    private long countTrucksInLargerLots(Node node, long capacityConstraint) {
+        // if empty then truck number is zero
+        if (node == null) {
+            return 0;
+        }
+        long totalTruckNumber = 0;
+        if (node.key > capacityConstraint) {
+            // this statement ensures that we take trucks from lots that have higher capacity constraint from the given
+            totalTruckNumber += node.element.getTruckNumberInReady();
+            totalTruckNumber += node.element.getTruckNumberInWaiting();
+        }
+
+        // Traverse both left and right subtrees
+        totalTruckNumber += countTrucksInLargerLots(node.leftChild, capacityConstraint); // left subtree truck number
+        totalTruckNumber += countTrucksInLargerLots(node.rightChild, capacityConstraint); // right subtree truck number
+
+        return totalTruckNumber;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        forEachElement(rootNode, action);
+    }
+
+    // Helper method for the in-order traversal
+    private void forEachElement(Node node, Consumer<ParkingLot> action) {
+        if (node == null) {
+            return;
+        }
+        forEachElement(node.leftChild, action);
+        action.accept(node.element);
+        forEachElement(node.rightChild, action);
+    }
+
+    /**
+     * Replaces the content of the tree by the given lots, building a perfectly balanced tree in O(n).
+     *
+     * @param elements Lots in increasing order of capacity constraint
+     * @param count    Number of lots to be taken from the start of the array
+     */
+    void buildFromSorted(ParkingLot[] elements, int count) {
+        finger = null;
+        rootNode = buildFromSorted(elements, 0, count - 1);
+        size = count;
+    }
+
+    // Helper method that builds the subtree of elements[from..to] with the middle element as its root
+    private Node buildFromSorted(ParkingLot[] elements, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node node = newNode(elements[middle]);
+        node.leftChild = buildFromSorted(elements, from, middle - 1);
+        node.rightChild = buildFromSorted(elements, middle + 1, to);
+        node.h = getMaxHeight(getHeight(node.leftChild), getHeight(node.rightChild)) + 1;
+        updateAggregates(node);
+        return node;
+    }
 }
 
 
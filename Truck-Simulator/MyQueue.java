@@ -1,3 +1,5 @@
+import java.util.function.Consumer;
+
 /**
  * MyQueue is a generic queue implementation using a linked list.
  * It supports typical queue operations such as add, remove, check if empty, and get size.
@@ -69,6 +71,50 @@ public class MyQueue<T> {
         return data; // Return the removed data
     }
 
+    /**
+     * Moves elements from the front of this queue to the end of another queue without allocating new nodes.
+     *
+     * @param target The queue that receives the elements
+     * @param count  Number of elements to be moved, at most the size of this queue
+     * @param moved  Array that receives the moved elements in order, at least count long
+     */
+    public void transferTo(MyQueue<T> target, int count, T[] moved) {
+        if (count <= 0) {
+            return;
+        }
+        Node<T> first = front;
+        Node<T> last = front;
+        moved[0] = last.data;
+        for (int i = 1; i < count; i++) {
+            last = last.next;
+            moved[i] = last.data;
+        }
+        front = last.next; // the rest of this queue
+        if (front == null) {
+            rear = null;
+        }
+        size -= count;
+        last.next = null;
+        if (target.rear != null) {
+            target.rear.next = first; // the moved nodes are linked as they are to the end of the target
+        } else {
+            target.front = first;
+        }
+        target.rear = last;
+        target.size += count;
+    }
+
+    /**
+     * Visits the elements from the front to the rear without removing them.
+     *
+     * @param action Called with every element
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (Node<T> node = front; node != null; node = node.next) {
+            action.accept(node.data);
+        }
+    }
+
     /**
      * Checks if the queue is empty.
      *
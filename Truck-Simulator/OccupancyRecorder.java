@@ -0,0 +1,475 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * OccupancyRecorder keeps the history of the waiting and ready truck numbers of every lot over the action index,
+ * as a LotTable listener (see Simulator.recordOccupancy). Every change of a lot is a sample; a lot that changes
+ * several times in one action keeps only its numbers at the end of the action.
+ * <p>
+ * The latest samples of a lot are kept as they are in a ring of primitive arrays. When the ring is full its oldest
+ * samples are merged, factor at a time, into a bucket of the first tier, which holds the first and last action, the
+ * number of samples, and the minimum, maximum and sum of both numbers. Each tier is a ring of buckets that passes its
+ * oldest buckets on to the next tier the same way; the last tier merges neighbouring buckets in place when it is full,
+ * so the whole run stays covered with coarser buckets and the memory of a lot never grows past the sizes given here.
+ * Rings are allocated small and grow up to these sizes, so lots that change rarely stay small.
+ * <p>
+ * A lot is known by its capacity constraint: a lot that is deleted and created again continues the same history,
+ * and the history of a deleted lot ends at its last change.
+ */
+public class OccupancyRecorder implements LotTable.Listener {
+    static final int DEFAULT_SAMPLES = 64;   // latest samples kept as they are
+    static final int DEFAULT_BUCKETS = 32;   // buckets of each tier
+    static final int DEFAULT_TIERS = 3;
+    static final int DEFAULT_FACTOR = 8;     // samples or buckets merged into one bucket of the next tier
+
+    private final LotTable table;
+    private final LongSupplier clock;        // index of the action being executed
+    private final int sampleCapacity;
+    private final int bucketCapacity;
+    private final int tierCount;
+    private final int factor;
+    private Series[] seriesByHandle = new Series[16];             // history of the lot in each row of the table
+    private final Map<Long, Series> seriesByConstraint = new TreeMap<>();
+
+    /**
+     * Constructs a recorder with the default sizes.
+     *
+     * @param table The table of the lots
+     * @param clock Supplies the index of the action being executed
+     */
+    public OccupancyRecorder(LotTable table, LongSupplier clock) {
+        this(table, clock, DEFAULT_SAMPLES, DEFAULT_BUCKETS, DEFAULT_TIERS, DEFAULT_FACTOR);
+    }
+
+    /**
+     * @param table          The table of the lots
+     * @param clock          Supplies the index of the action being executed
+     * @param sampleCapacity The number of latest samples kept as they are for each lot
+     * @param bucketCapacity The number of buckets of each tier
+     * @param tierCount      The number of tiers
+     * @param factor         The number of samples or buckets merged into one bucket of the next tier
+     * @throws IllegalArgumentException If a size cannot hold factor samples or buckets
+     */
+    public OccupancyRecorder(LotTable table, LongSupplier clock, int sampleCapacity, int bucketCapacity,
+                             int tierCount, int factor) {
+        if (factor < 2 || sampleCapacity < factor || bucketCapacity < factor || tierCount < 1) {
+            throw new IllegalArgumentException("rings must hold at least factor entries, and factor be at least 2");
+        }
+        this.table = table;
+        this.clock = clock;
+        this.sampleCapacity = sampleCapacity;
+        this.bucketCapacity = bucketCapacity;
+        this.tierCount = tierCount;
+        this.factor = factor;
+    }
+
+    @Override
+    public void lotChanged(int handle) {
+        long capacityConstraint = table.getCapacityConstraint(handle);
+        if (handle >= seriesByHandle.length) {
+            seriesByHandle = Arrays.copyOf(seriesByHandle, Math.max(handle + 1, seriesByHandle.length * 2));
+        }
+        Series series = seriesByHandle[handle];
+        // rows are reused by new lots, which are found by their capacity constraint
+        if (series == null || series.capacityConstraint != capacityConstraint) {
+            series = seriesByConstraint.computeIfAbsent(capacityConstraint, Series::new);
+            seriesByHandle[handle] = series;
+        }
+        series.add(clock.getAsLong(), table.getTruckNumberInWaiting(handle), table.getTruckNumberInReady(handle));
+    }
+
+    /**
+     * @return The capacity constraints of the lots that have a history, in increasing order
+     */
+    long[] lots() {
+        long[] lots = new long[seriesByConstraint.size()];
+        int i = 0;
+        for (long capacityConstraint : seriesByConstraint.keySet()) {
+            lots[i++] = capacityConstraint;
+        }
+        return lots;
+    }
+
+    /**
+     * Returns the history of a lot from its first change to its last, oldest first. The oldest buckets are the
+     * coarsest, and the latest samples are buckets of one sample.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     * @return The buckets of the lot, empty if it has no history
+     */
+    List<Bucket> history(long capacityConstraint) {
+        return history(capacityConstraint, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the part of the history of a lot that overlaps a range of actions, oldest first.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     * @param fromAction         First action index of the range
+     * @param toAction           Last action index of the range
+     * @return The buckets of the lot that have samples in the range or span it
+     */
+    List<Bucket> history(long capacityConstraint, long fromAction, long toAction) {
+        List<Bucket> buckets = new ArrayList<>();
+        Series series = seriesByConstraint.get(capacityConstraint);
+        if (series != null) {
+            series.collect(fromAction, toAction, buckets);
+        }
+        return buckets;
+    }
+
+    /**
+     * Merges the history of a lot over a range of actions into one bucket. Buckets that only partly overlap the
+     * range are counted whole, so the result may cover a little more than the range.
+     *
+     * @param capacityConstraint Capacity constraint of the lot
+     * @param fromAction         First action index of the range
+     * @param toAction           Last action index of the range
+     * @return The merged bucket, or null if the lot has no sample in the range
+     */
+    Bucket summarize(long capacityConstraint, long fromAction, long toAction) {
+        Bucket merged = null;
+        for (Bucket bucket : history(capacityConstraint, fromAction, toAction)) {
+            merged = merged == null ? bucket : merged.merge(bucket);
+        }
+        return merged;
+    }
+
+    /**
+     * Writes the histories of all lots as text, in increasing order of capacity constraint:
+     * <pre>
+     *   lot &lt;capacity constraint&gt;
+     *   &lt;first action&gt; &lt;last action&gt; &lt;samples&gt; &lt;waiting min&gt; &lt;waiting max&gt; &lt;waiting avg&gt; &lt;ready min&gt; &lt;ready max&gt; &lt;ready avg&gt;
+     *   ...
+     * </pre>
+     * with one bucket line per bucket of the lot, oldest first. Averages are over the samples and have two decimals.
+     *
+     * @param out Receives the histories
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void dump(Writer out) throws IOException {
+        List<Bucket> buckets = new ArrayList<>();
+        StringBuilder line = new StringBuilder();  // lines are built by hand, String.format would take most of the time
+        for (Series series : seriesByConstraint.values()) {
+            out.write("lot " + series.capacityConstraint + "\n");
+            buckets.clear();
+            series.collect(Long.MIN_VALUE, Long.MAX_VALUE, buckets);
+            for (Bucket bucket : buckets) {
+                line.setLength(0);
+                line.append(bucket.firstAction).append(' ').append(bucket.lastAction).append(' ')
+                        .append(bucket.samples).append(' ').append(bucket.minWaiting).append(' ')
+                        .append(bucket.maxWaiting).append(' ');
+                appendAverage(line, bucket.waitingSum, bucket.samples);
+                line.append(' ').append(bucket.minReady).append(' ').append(bucket.maxReady).append(' ');
+                appendAverage(line, bucket.readySum, bucket.samples);
+                out.append(line).append('\n');
+            }
+        }
+        out.flush();
+    }
+
+    // appends sum / count rounded to two decimals
+    private static void appendAverage(StringBuilder line, long sum, long count) {
+        long hundredths = Math.round(sum * 100.0 / count);
+        long fraction = hundredths % 100;
+        line.append(hundredths / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+
+    /**
+     * Bucket is a stretch of the history of a lot: the actions it spans, the number of samples in it,
+     * and the minimum, maximum and sum of the waiting and ready truck numbers of these samples.
+     */
+    static class Bucket {
+        final long firstAction;
+        final long lastAction;
+        final long samples;
+        final int minWaiting;
+        final int maxWaiting;
+        final long waitingSum;
+        final int minReady;
+        final int maxReady;
+        final long readySum;
+
+        Bucket(long firstAction, long lastAction, long samples, int minWaiting, int maxWaiting, long waitingSum,
+               int minReady, int maxReady, long readySum) {
+            this.firstAction = firstAction;
+            this.lastAction = lastAction;
+            this.samples = samples;
+            this.minWaiting = minWaiting;
+            this.maxWaiting = maxWaiting;
+            this.waitingSum = waitingSum;
+            this.minReady = minReady;
+            this.maxReady = maxReady;
+            this.readySum = readySum;
+        }
+
+        double averageWaiting() {
+            return (double) waitingSum / samples;
+        }
+
+        double averageReady() {
+            return (double) readySum / samples;
+        }
+
+        // the bucket spanning this one and a later one
+        Bucket merge(Bucket later) {
+            return new Bucket(firstAction, later.lastAction, samples + later.samples,
+                    Math.min(minWaiting, later.minWaiting), Math.max(maxWaiting, later.maxWaiting),
+                    waitingSum + later.waitingSum, Math.min(minReady, later.minReady),
+                    Math.max(maxReady, later.maxReady), readySum + later.readySum);
+        }
+    }
+
+    /**
+     * Tier is a ring of buckets kept as parallel primitive arrays, the oldest at head.
+     */
+    private static class Tier {
+        long[] firstActions = new long[4];
+        long[] lastActions = new long[4];
+        long[] samples = new long[4];
+        long[] waitingSums = new long[4];
+        long[] readySums = new long[4];
+        int[] minWaiting = new int[4];
+        int[] maxWaiting = new int[4];
+        int[] minReady = new int[4];
+        int[] maxReady = new int[4];
+        int head;
+        int size;
+
+        // makes room for more buckets, keeping the order of the ring
+        void grow(int length) {
+            firstActions = unwrap(firstActions, length);
+            lastActions = unwrap(lastActions, length);
+            samples = unwrap(samples, length);
+            waitingSums = unwrap(waitingSums, length);
+            readySums = unwrap(readySums, length);
+            minWaiting = unwrap(minWaiting, length);
+            maxWaiting = unwrap(maxWaiting, length);
+            minReady = unwrap(minReady, length);
+            maxReady = unwrap(maxReady, length);
+            head = 0;
+        }
+
+        private long[] unwrap(long[] ring, int length) {
+            long[] copy = new long[length];
+            for (int i = 0; i < size; i++) {
+                copy[i] = ring[(head + i) % ring.length];
+            }
+            return copy;
+        }
+
+        private int[] unwrap(int[] ring, int length) {
+            int[] copy = new int[length];
+            for (int i = 0; i < size; i++) {
+                copy[i] = ring[(head + i) % ring.length];
+            }
+            return copy;
+        }
+
+        // position of the i-th oldest bucket
+        int at(int i) {
+            return (head + i) % firstActions.length;
+        }
+
+        void append(long firstAction, long lastAction, long count, int minW, int maxW, long sumW,
+                    int minR, int maxR, long sumR) {
+            int position = at(size++);
+            firstActions[position] = firstAction;
+            lastActions[position] = lastAction;
+            samples[position] = count;
+            minWaiting[position] = minW;
+            maxWaiting[position] = maxW;
+            waitingSums[position] = sumW;
+            minReady[position] = minR;
+            maxReady[position] = maxR;
+            readySums[position] = sumR;
+        }
+
+        // copies the bucket at position from to position into
+        void copy(int from, int into) {
+            if (from == into) {
+                return;
+            }
+            firstActions[into] = firstActions[from];
+            lastActions[into] = lastActions[from];
+            samples[into] = samples[from];
+            minWaiting[into] = minWaiting[from];
+            maxWaiting[into] = maxWaiting[from];
+            waitingSums[into] = waitingSums[from];
+            minReady[into] = minReady[from];
+            maxReady[into] = maxReady[from];
+            readySums[into] = readySums[from];
+        }
+
+        // folds the bucket at position from into the bucket at position into, which is older
+        void fold(int into, int from) {
+            lastActions[into] = lastActions[from];
+            samples[into] += samples[from];
+            minWaiting[into] = Math.min(minWaiting[into], minWaiting[from]);
+            maxWaiting[into] = Math.max(maxWaiting[into], maxWaiting[from]);
+            waitingSums[into] += waitingSums[from];
+            minReady[into] = Math.min(minReady[into], minReady[from]);
+            maxReady[into] = Math.max(maxReady[into], maxReady[from]);
+            readySums[into] += readySums[from];
+        }
+
+        Bucket bucket(int i) {
+            int p = at(i);
+            return new Bucket(firstActions[p], lastActions[p], samples[p], minWaiting[p], maxWaiting[p],
+                    waitingSums[p], minReady[p], maxReady[p], readySums[p]);
+        }
+    }
+
+    /**
+     * Series is the history of one lot: the ring of its latest samples and its tiers.
+     */
+    private class Series {
+        final long capacityConstraint;
+        long[] actions = new long[4];     // ring of the latest samples, the oldest at head
+        int[] waiting = new int[4];
+        int[] ready = new int[4];
+        int head;
+        int size;
+        final Tier[] tiers = new Tier[tierCount];  // created when the first bucket reaches them
+
+        Series(long capacityConstraint) {
+            this.capacityConstraint = capacityConstraint;
+        }
+
+        void add(long action, int waitingNumber, int readyNumber) {
+            if (size > 0) {
+                int last = wrap(head + size - 1);
+                if (actions[last] == action) {
+                    // one sample per action, with the numbers at its end
+                    waiting[last] = waitingNumber;
+                    ready[last] = readyNumber;
+                    return;
+                }
+            }
+            if (size == actions.length) {
+                if (size < sampleCapacity) {
+                    growSamples(Math.min(size * 2, sampleCapacity));
+                } else {
+                    downsampleOldest();
+                }
+            }
+            int position = wrap(head + size++);
+            actions[position] = action;
+            waiting[position] = waitingNumber;
+            ready[position] = readyNumber;
+        }
+
+        // position in the sample ring of an offset from its start below twice its length, without a division
+        private int wrap(int position) {
+            return position < actions.length ? position : position - actions.length;
+        }
+
+        private void growSamples(int length) {
+            long[] newActions = new long[length];
+            int[] newWaiting = new int[length];
+            int[] newReady = new int[length];
+            for (int i = 0; i < size; i++) {
+                int p = (head + i) % actions.length;
+                newActions[i] = actions[p];
+                newWaiting[i] = waiting[p];
+                newReady[i] = ready[p];
+            }
+            actions = newActions;
+            waiting = newWaiting;
+            ready = newReady;
+            head = 0;
+        }
+
+        // merges the factor oldest samples into a new bucket of the first tier
+        private void downsampleOldest() {
+            int p = head;
+            long firstAction = actions[p];
+            int minW = waiting[p];
+            int maxW = minW;
+            long sumW = minW;
+            int minR = ready[p];
+            int maxR = minR;
+            long sumR = minR;
+            for (int i = 1; i < factor; i++) {
+                p = (head + i) % actions.length;
+                minW = Math.min(minW, waiting[p]);
+                maxW = Math.max(maxW, waiting[p]);
+                sumW += waiting[p];
+                minR = Math.min(minR, ready[p]);
+                maxR = Math.max(maxR, ready[p]);
+                sumR += ready[p];
+            }
+            Tier first = tier(0);
+            first.append(firstAction, actions[p], factor, minW, maxW, sumW, minR, maxR, sumR);
+            head = (head + factor) % actions.length;
+            size -= factor;
+        }
+
+        // returns a tier with room for one more bucket, passing buckets on or merging them to make room
+        private Tier tier(int level) {
+            if (tiers[level] == null) {
+                tiers[level] = new Tier();
+            }
+            Tier tier = tiers[level];
+            if (tier.size == tier.firstActions.length) {
+                if (tier.size < bucketCapacity) {
+                    tier.grow(Math.min(tier.size * 2, bucketCapacity));
+                } else if (level + 1 < tierCount) {
+                    // the factor oldest buckets become one bucket of the next tier
+                    int into = tier.at(0);
+                    for (int i = 1; i < factor; i++) {
+                        tier.fold(into, tier.at(i));
+                    }
+                    Tier next = tier(level + 1);
+                    next.append(tier.firstActions[into], tier.lastActions[into], tier.samples[into],
+                            tier.minWaiting[into], tier.maxWaiting[into], tier.waitingSums[into],
+                            tier.minReady[into], tier.maxReady[into], tier.readySums[into]);
+                    tier.head = tier.at(factor);
+                    tier.size -= factor;
+                } else {
+                    // the last tier halves its resolution, merging neighbours into the front of the ring
+                    int merged = 0;
+                    for (int i = 0; i < tier.size; i += 2) {
+                        int into = tier.at(merged);
+                        tier.copy(tier.at(i), into);
+                        if (i + 1 < tier.size) {
+                            tier.fold(into, tier.at(i + 1));
+                        }
+                        merged++;
+                    }
+                    tier.size = merged;
+                }
+            }
+            return tier;
+        }
+
+        // adds the buckets that overlap a range of actions, oldest first: the last tier, the other tiers, the samples
+        void collect(long fromAction, long toAction, List<Bucket> buckets) {
+            for (int level = tierCount - 1; level >= 0; level--) {
+                Tier tier = tiers[level];
+                if (tier == null) {
+                    continue;
+                }
+                for (int i = 0; i < tier.size; i++) {
+                    int p = tier.at(i);
+                    if (tier.lastActions[p] >= fromAction && tier.firstActions[p] <= toAction) {
+                        buckets.add(tier.bucket(i));
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int p = (head + i) % actions.length;
+                if (actions[p] >= fromAction && actions[p] <= toAction) {
+                    buckets.add(new Bucket(actions[p], actions[p], 1, waiting[p], waiting[p], waiting[p],
+                            ready[p], ready[p], ready[p]));
+                }
+            }
+        }
+    }
+}
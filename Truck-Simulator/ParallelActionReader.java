@@ -0,0 +1,261 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * ParallelActionReader decodes an input file into ActionBuffers on a ForkJoinPool while the caller executes
+ * the buffers that are already decoded. The file is cut into chunks of a fixed size, and a chunk owns the
+ * lines that start in it, so no thread has to know where the previous chunk's lines end. Chunks are handed
+ * out strictly in file order, a few of them ahead of the caller.
+ * <p>
+ * Lines are split the way Scanner.nextLine() and String.split(" ") split them in Main, and lines with an
+ * unknown action become Action.UNKNOWN, so executing the buffers gives the same results as executing the
+ * lines. Plain ASCII lines are decoded from the bytes without making strings; any other line is decoded
+ * through strings in the default charset, as Scanner does. A line that cannot be parsed fails after the actions
+ * before it have been returned. Bytes that are not valid in the default charset fail with a
+ * MalformedInputException, where Scanner would silently stop reading somewhere near them.
+ */
+public class ParallelActionReader implements Closeable {
+    static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private static final int MAX_FAST_DIGITS = 18;  // more digits may overflow a long, Long.parseLong() decides
+    private static final int READ_AHEAD = 4096;     // bytes read past the end of a chunk for its last line
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int chunkSize;
+    private final long chunkCount;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;  // chunks decoded ahead of the caller
+    private final ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+    private long nextChunk;  // index of the next chunk to be given to the pool
+    private RuntimeException pendingError;  // error of the line after the last returned action
+
+    // the actions of a chunk, and the error of the line that stopped its decoding, if any
+    private static class Chunk {
+        final ActionBuffer actions = new ActionBuffer();
+        RuntimeException error;
+    }
+
+    /**
+     * Opens a file for decoding.
+     *
+     * @param file      The input file
+     * @param threads   Number of decoding threads
+     * @param chunkSize Size of the chunks in bytes
+     * @throws IOException If the file cannot be opened
+     */
+    public ParallelActionReader(File file, int threads, int chunkSize) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        this.chunkSize = chunkSize;
+        chunkCount = (fileSize + chunkSize - 1) / chunkSize;
+        pool = new ForkJoinPool(threads);
+        maxInFlight = 2 * threads + 1;
+    }
+
+    /**
+     * Returns the decoded actions of the next chunk, waiting for its decoding if needed.
+     * Chunks that hold no line give empty buffers.
+     *
+     * @return The actions, or null after the last chunk
+     * @throws IOException If the file cannot be read
+     */
+    public ActionBuffer next() throws IOException {
+        if (pendingError instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) pendingError).getCause();
+        }
+        if (pendingError != null) {
+            throw pendingError;
+        }
+        while (inFlight.size() < maxInFlight && nextChunk < chunkCount) {
+            long index = nextChunk++;
+            inFlight.add(pool.submit(() -> new ChunkDecoder().decode(index)));
+        }
+        ForkJoinTask<Chunk> task = inFlight.poll();
+        if (task == null) {
+            return null;
+        }
+        Chunk chunk;
+        try {
+            chunk = task.join();
+        } catch (RuntimeException e) {
+            // join() may wrap the exception of the decoding thread
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+            }
+            throw e;
+        }
+        pendingError = chunk.error;
+        return chunk.actions;
+    }
+
+    /**
+     * Stops the decoding threads and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    // ---- decoding of one chunk ----
+
+    // decodes one chunk, every chunk gets its own decoder so the pool threads share nothing but the channel
+    private class ChunkDecoder {
+        private byte[] bytes;                         // the bytes of the chunk and the ones read past its end
+        private int length;                           // number of bytes read into the array
+        private long bytesStart;                      // file offset of bytes[0]
+        private long[] operands = new long[2];        // operands of the line being decoded
+
+        // makes sure the byte at a position of the array is read, returns false at the end of the file
+        private boolean available(int position) {
+            while (position >= length) {
+                long remaining = fileSize - (bytesStart + length);
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(READ_AHEAD, bytes.length * 2));
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, length, (int) Math.min(bytes.length - length, remaining));
+                try {
+                    int read = channel.read(buffer, bytesStart + length);
+                    if (read < 0) {
+                        return false;
+                    }
+                    length += read;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        Chunk decode(long index) {
+            Chunk chunk = new Chunk();
+            long start = index * chunkSize;
+            long end = Math.min(start + chunkSize, fileSize);
+            // the byte before the chunk tells whether a line starts right at the chunk
+            bytesStart = index == 0 ? 0 : start - 1;
+            bytes = new byte[(int) (end - bytesStart) + READ_AHEAD];
+            int position = 0;
+            if (index > 0) {
+                while (available(position) && bytes[position] != '\n') {
+                    position++;
+                }
+                position++; // the first line of the chunk starts after the newline
+            }
+            // the chunk decodes every segment between newlines that starts before its end
+            while (bytesStart + position < end) {
+                int segmentStart = position;
+                boolean plain = true; // ASCII without carriage returns, so the segment is one line
+                while (available(position) && bytes[position] != '\n') {
+                    plain &= bytes[position] > 0 && bytes[position] != '\r';
+                    position++;
+                }
+                boolean newline = position < length;
+                try {
+                    if (plain) {
+                        decodeLine(chunk.actions, segmentStart, position);
+                    } else {
+                        decodeSegment(chunk.actions, segmentStart, position, newline);
+                    }
+                } catch (RuntimeException e) {
+                    chunk.error = e;
+                    return chunk;
+                }
+                position++;
+            }
+            return chunk;
+        }
+
+        // decodes the lines of a segment that may hold other line separators than the newline at its end
+        private void decodeSegment(ActionBuffer actions, int from, int to, boolean newline) {
+            // Scanner decodes with the default charset too
+            String segment;
+            try {
+                segment = Charset.defaultCharset().newDecoder().decode(ByteBuffer.wrap(bytes, from, to - from)).toString();
+            } catch (CharacterCodingException e) {
+                throw new UncheckedIOException(e);
+            }
+            // the other separators of Scanner.nextLine(), a carriage return before the newline belongs to it
+            String[] lines = segment.split("[\\r\\u2028\\u2029\\u0085]", -1);
+            int count = lines.length;
+            if (lines[count - 1].isEmpty() && (count > 1 && segment.endsWith("\r") || !newline)) {
+                count--; // no line follows the last separator
+            }
+            for (int i = 0; i < count; i++) {
+                actions.addLine(lines[i]);
+            }
+        }
+
+        // decodes a line of ASCII bytes, or hands it to addLine() if it is not in the usual form
+        private void decodeLine(ActionBuffer actions, int from, int to) {
+            int nameEnd = from;
+            while (nameEnd < to && bytes[nameEnd] != ' ') {
+                nameEnd++;
+            }
+            int opcode = Action.parse(bytes, from, nameEnd);
+            if (opcode == Action.UNKNOWN) {
+                if (nameEnd == from && to > from) {
+                    // a line starting with a space, which String.split() treats in its own way
+                    actions.addLine(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+                } else {
+                    actions.add(Action.UNKNOWN);
+                }
+                return;
+            }
+            int operandCount = Action.operandCount(opcode);
+            boolean variable = Action.hasVariableOperands(opcode);
+            int position = nameEnd;
+            // fixed actions ignore the words after their operands, variable ones take all of them
+            int i = 0;
+            for (; i < operandCount || variable && position < to; i++) {
+                // an operand is a single space followed by an optional minus sign and up to 18 digits
+                if (position >= to || bytes[position] != ' ') {
+                    actions.addLine(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+                    return;
+                }
+                position++;
+                boolean negative = position < to && bytes[position] == '-';
+                if (negative) {
+                    position++;
+                }
+                int digitsStart = position;
+                long value = 0;
+                while (position < to && bytes[position] >= '0' && bytes[position] <= '9') {
+                    value = value * 10 + (bytes[position] - '0');
+                    position++;
+                }
+                int digits = position - digitsStart;
+                if (digits == 0 || digits > MAX_FAST_DIGITS || position < to && bytes[position] != ' ') {
+                    actions.addLine(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+                    return;
+                }
+                if (i == operands.length) {
+                    operands = Arrays.copyOf(operands, i * 2);
+                }
+                operands[i] = negative ? -value : value;
+            }
+            operandCount = i;
+            actions.add(opcode);
+            for (int j = 0; j < operandCount; j++) {
+                actions.addOperand(operands[j]);
+            }
+        }
+    }
+}
@@ -1,32 +1,41 @@
 /**
  * ParkingLot class represents a parking lot with specific capacity constraints and truck limits.
  * It maintains queues for trucks waiting to be ready and trucks that are ready for loading.
+ * The state of the lot is kept in a row of a LotTable, this object only holds the table and the row's handle.
  */
 public class ParkingLot {
-    private long capacityConstraint;        // Capacity constraint of the parking lot
-    private long truckLimit;                // Maximum number of trucks allowed in the parking lot
-    private long truckNumberInWaiting;      // Current number of trucks in the waiting section
-    private long truckNumberInReady;        // Current number of trucks in the ready section
-    private MyQueue<Truck> waitingSection;  // Queue to hold trucks waiting to be ready
-    private MyQueue<Truck> readySection;    // Queue to hold trucks that are ready for loading
+    private final LotTable table;  // Table that stores the state of the parking lot
+    private final int handle;      // Row of the parking lot in the table
 
     /**
-     * Default constructor initializes an empty ParkingLot object.
+     * Parameterized constructor adds a parking lot with specified capacity constraint and truck limit to the table.
+     * Its waiting and ready sections are created when the first truck arrives.
+     *
+     * @param table              Table that stores the state of the parking lot
+     * @param capacityConstraint Maximum load capacity for the parking lot
+     * @param truckLimit         Maximum number of trucks allowed in the parking lot
      */
-    ParkingLot() {
+    ParkingLot(LotTable table, long capacityConstraint, long truckLimit) {
+        this.table = table;
+        this.handle = table.allocate(capacityConstraint, truckLimit);
     }
+
     /**
-     * Parameterized constructor initializes a ParkingLot object with specified capacity constraint and truck limit.
-     * It also initializes the queues for waiting and ready sections.
+     * Constructs another view of a parking lot that is already in the table.
      *
-     * @param capacityConstraint Maximum load capacity for the parking lot
-     * @param truckLimit         Maximum number of trucks allowed in the parking lot
+     * @param table  Table that stores the state of the parking lot
+     * @param handle Row of the parking lot in the table
+     */
+    ParkingLot(LotTable table, int handle) {
+        this.table = table;
+        this.handle = handle;
+    }
+
+    /**
+     * @return The row of the parking lot in its table
      */
-    ParkingLot(long capacityConstraint, long truckLimit) {
-        this.waitingSection = new MyQueue<>();
-        this.readySection = new MyQueue<>();
-        this.capacityConstraint = capacityConstraint;
-        this.truckLimit = truckLimit;
+    int getHandle() {
+        return handle;
     }
 
     /**
@@ -35,10 +44,7 @@ public class ParkingLot {
      * @param truck The truck to be added to the waiting section
      */
     void addTruck(Truck truck) {
-        if (truckNumberInWaiting + truckNumberInReady < truckLimit) {
-            waitingSection.add(truck); // Add truck to waiting section
-            truckNumberInWaiting++; // Increment count of trucks in waiting
-        }
+        table.addTruck(handle, truck);
     }
 
     /**
@@ -47,11 +53,30 @@ public class ParkingLot {
      * @return The truck removed from the ready section, or null if the section is empty
      */
     Truck removeFromReady() {
-        if (truckNumberInReady > 0) {
-            truckNumberInReady--; // Decrement count of trucks in ready section
-            return readySection.remove(); // Remove and return truck from ready section
-        }
-        return null; // Return null if no trucks are in ready section
+        return table.removeFromReady(handle);
+    }
+
+    /**
+     * Adds trucks to the waiting section until the truck limit is reached.
+     *
+     * @param trucks Array holding the trucks to be added
+     * @param from   Index of the first truck in the array
+     * @param count  Number of trucks to be added
+     * @return The number of trucks added, the first ones of the given trucks
+     */
+    int addTrucks(Truck[] trucks, int from, int count) {
+        return table.addTrucks(handle, trucks, from, count);
+    }
+
+    /**
+     * Moves the first trucks from the waiting section to the ready section.
+     *
+     * @param count Number of trucks to be moved
+     * @param moved Array that receives the moved trucks in order
+     * @return The number of trucks moved
+     */
+    int moveToReady(int count, Truck[] moved) {
+        return table.moveToReady(handle, count, moved);
     }
 
     /**
@@ -60,35 +85,49 @@ public class ParkingLot {
      * @return The truck moved to the ready section, or null if the waiting section is empty
      */
     Truck moveToReady() {
-        if (!waitingSection.isEmpty()) {
-            Truck firstWaitingTruck = waitingSection.remove();
-            truckNumberInWaiting--;
-            readySection.add(firstWaitingTruck);
-            truckNumberInReady++;
-            return firstWaitingTruck; // Return the truck moved to ready section
-        }
-        return null; // Return null if no trucks are in waiting section
+        return table.moveToReady(handle);
+    }
+
+    /**
+     * Removes the parking lot and its trucks from the table. The lot must not be used afterwards.
+     */
+    void release() {
+        table.release(handle);
     }
 
     /**
      * @return The capacity constraint of the parking lot
      */
     long getCapacityConstraint() {
-        return capacityConstraint;
+        return table.getCapacityConstraint(handle);
+    }
+
+    /**
+     * @return The maximum number of trucks allowed in the parking lot
+     */
+    long getTruckLimit() {
+        return table.getTruckLimit(handle);
     }
 
     /**
      * @return The number of trucks in the waiting section
      */
     long getTruckNumberInWaiting() {
-        return truckNumberInWaiting;
+        return table.getTruckNumberInWaiting(handle);
     }
 
     /**
      * @return The number of trucks in the ready section
      */
     long getTruckNumberInReady() {
-        return truckNumberInReady;
+        return table.getTruckNumberInReady(handle);
+    }
+
+    /**
+     * @return The number of trucks that can still be added to the parking lot
+     */
+    long getFreeSlots() {
+        return table.getTruckLimit(handle) - getTruckNumberInWaiting() - getTruckNumberInReady();
     }
 
     /**
@@ -97,6 +136,6 @@ public class ParkingLot {
      * @return True if more trucks can be added, false otherwise
      */
     boolean getAvailability() {
-        return truckLimit > getTruckNumberInWaiting() + getTruckNumberInReady();
+        return table.getTruckLimit(handle) > getTruckNumberInWaiting() + getTruckNumberInReady();
     }
 }
@@ -0,0 +1,156 @@
+/**
+ * PlacementPolicies contains the built-in placement policies and creates them from their names.
+ * Except for best-fit, the policies consider the lots whose capacity constraint is within a window
+ * below the truck's capacity, i.e. in [capacity - window, capacity]. Best-fit takes O(log n) per truck. The
+ * other policies search their window with findBestLot() or findFirstAvailableLot(), which use the occupancy
+ * aggregates of the index: O(log n) for the trees and O(m / 64 + 64) for flat, where m is the number of lots in
+ * the window, while the mapped index keeps no aggregates and visits the lots of the window one at a time.
+ */
+public class PlacementPolicies {
+    static final long UNLIMITED = Long.MAX_VALUE;  // window that contains every lot below the truck's capacity
+
+    private PlacementPolicies() {
+    }
+
+    /**
+     * Creates a policy from its name, optionally followed by ":" and a window, e.g. "most-free:100".
+     * The names are best-fit, most-free, least-loaded and round-robin.
+     * Policies keep state, so every simulation needs its own instance.
+     *
+     * @param spec Name of the policy with an optional window
+     * @return A new instance of the policy
+     * @throws IllegalArgumentException If there is no policy with that name
+     */
+    static PlacementPolicy forName(String spec) {
+        String name = spec;
+        long window = UNLIMITED;
+        int separator = spec.indexOf(':');
+        if (separator >= 0) {
+            name = spec.substring(0, separator);
+            window = Long.parseLong(spec.substring(separator + 1));
+        }
+        switch (name) {
+            case "best-fit":
+                return new BestFit();
+            case "most-free":
+                return new MostFreeSlots(window);
+            case "least-loaded":
+                return new LeastLoaded(window);
+            case "round-robin":
+                return new RoundRobin(window);
+            default:
+                throw new IllegalArgumentException("unknown placement policy: " + spec);
+        }
+    }
+
+    // smallest capacity constraint inside the window below the capacity, without overflowing
+    private static long windowStart(long capacity, long window) {
+        long start = capacity - window;
+        return start > capacity ? Long.MIN_VALUE : start; // the subtraction wrapped around
+    }
+
+    /**
+     * The lot with the largest capacity constraint at or below the truck's capacity (the original rule).
+     */
+    static class BestFit implements PlacementPolicy {
+        @Override
+        public ParkingLot selectLot(LotIndex availableLots, long capacity) {
+            return Methods.findLowerAvailableLot(availableLots, capacity);
+        }
+
+        @Override
+        public boolean selectsUntilFull() {
+            return true;
+        }
+    }
+
+    /**
+     * The lot with the most free slots within the window, found with the maximum free slots aggregate.
+     */
+    static class MostFreeSlots implements PlacementPolicy {
+        private final long window;
+
+        MostFreeSlots(long window) {
+            this.window = window;
+        }
+
+        @Override
+        public ParkingLot selectLot(LotIndex availableLots, long capacity) {
+            return availableLots.findBestLot(windowStart(capacity, window), capacity, LotIndex.FREE_SLOTS);
+        }
+
+        @Override
+        public boolean tracksOccupancy() {
+            return true;
+        }
+    }
+
+    /**
+     * The lot with the fewest trucks within the window, found with the minimum truck number aggregate.
+     */
+    static class LeastLoaded implements PlacementPolicy {
+        private final long window;
+
+        LeastLoaded(long window) {
+            this.window = window;
+        }
+
+        @Override
+        public ParkingLot selectLot(LotIndex availableLots, long capacity) {
+            return availableLots.findBestLot(windowStart(capacity, window), capacity, LotIndex.LOAD);
+        }
+
+        @Override
+        public boolean tracksOccupancy() {
+            return true;
+        }
+    }
+
+    /**
+     * Cycles through the lots within the window with a single cursor, the capacity constraint of the lot used
+     * last: each truck goes to the first lot above the cursor that can take it, starting again from the bottom
+     * of the window when there is none up to the truck's capacity. The cursor is shared by all trucks, so trucks
+     * of different capacities move it for each other. Lots without free slots (full lots are not in the index,
+     * but lots created with a truck limit of 0 are) are skipped with the free slot aggregates of the index.
+     */
+    static class RoundRobin implements PlacementPolicy {
+        private final long window;
+        private long lastCapacityConstraint = Long.MIN_VALUE;  // capacity constraint of the lot used last
+
+        RoundRobin(long window) {
+            this.window = window;
+        }
+
+        @Override
+        public ParkingLot selectLot(LotIndex availableLots, long capacity) {
+            long low = windowStart(capacity, window);
+            ParkingLot parkingLot = null;
+            if (lastCapacityConstraint >= low && lastCapacityConstraint < capacity) {
+                parkingLot = availableLots.findFirstAvailableLot(lastCapacityConstraint + 1, capacity);
+            }
+            if (parkingLot == null) {
+                parkingLot = availableLots.findFirstAvailableLot(low, capacity); // wrap around
+            }
+            if (parkingLot == null) {
+                return null;
+            }
+            lastCapacityConstraint = parkingLot.getCapacityConstraint();
+            return parkingLot;
+        }
+
+        @Override
+        public boolean tracksOccupancy() {
+            return true;
+        }
+
+        @Override
+        public long[] saveState() {
+            return new long[]{lastCapacityConstraint};
+        }
+
+        @Override
+        public void restoreState(long[] state) {
+            lastCapacityConstraint = state[0];
+        }
+    }
+}
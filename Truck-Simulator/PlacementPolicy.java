@@ -0,0 +1,51 @@
+/**
+ * PlacementPolicy decides which available parking lot receives a truck, both for add_truck
+ * and when a truck is put back into a lot after a load.
+ */
+public interface PlacementPolicy {
+    /**
+     * Selects the lot that a truck with the given remaining capacity is placed in.
+     *
+     * @param availableLots The index of available parking lots
+     * @param capacity      Remaining capacity of the truck
+     * @return The selected parking lot, or null if the truck cannot be placed
+     */
+    ParkingLot selectLot(LotIndex availableLots, long capacity);
+
+    /**
+     * Policies that look at the occupancy of the lots need the tree of available lots to keep
+     * occupancy aggregates, and to be refreshed whenever the trucks of a lot change.
+     *
+     * @return True if the policy relies on occupancy aggregates
+     */
+    default boolean tracksOccupancy() {
+        return false;
+    }
+
+    /**
+     * Policies whose choice for a capacity only changes when the chosen lot fills up, or when lots enter or
+     * leave the index, let bulk additions place trucks in one lot after a single selection.
+     *
+     * @return True if repeated selections for a capacity give the same lot until it is full
+     */
+    default boolean selectsUntilFull() {
+        return false;
+    }
+
+    /**
+     * Policies that remember earlier selections hand that memory to simulator snapshots.
+     *
+     * @return The state of the policy, empty for policies without state
+     */
+    default long[] saveState() {
+        return new long[0];
+    }
+
+    /**
+     * Restores the state that saveState() returned for a policy of the same kind.
+     *
+     * @param state The saved state
+     */
+    default void restoreState(long[] state) {
+    }
+}
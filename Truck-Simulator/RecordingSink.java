@@ -0,0 +1,163 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * RecordingSink passes every result on to another sink and also keeps it, so the results of a stretch of actions
+ * can be saved with a snapshot (see SnapshotCache) and replayed later into any sink in place of running the actions
+ * again. The calls are kept rather than formatted output, which makes saved results independent of the output format.
+ * Saved results use variable-length numbers: action indexes as the distance from the previous index, which is
+ * almost always one, records without a truck as a kind of their own, and the rest zigzag encoded so that FAILED
+ * takes one byte.
+ */
+public class RecordingSink implements ResultSink {
+    // kinds of the kept calls
+    private static final int BEGIN = 0;
+    private static final int RECORD = 1;
+    private static final int END_LINE = 2;
+    private static final int RECORD_WITHOUT_TRUCK = 3;  // only in saved results
+
+    private final ResultSink sink;                // the sink that receives every result
+    private long[] calls = new long[1024];        // kind and arguments of every call since the last save
+    private int length;                           // used length of calls
+
+    /**
+     * @param sink The sink that receives every result
+     */
+    public RecordingSink(ResultSink sink) {
+        this.sink = sink;
+    }
+
+    private void keep(long kind, long a, long b, long c) {
+        if (length + 4 > calls.length) {
+            calls = Arrays.copyOf(calls, calls.length * 2);
+        }
+        calls[length++] = kind;
+        calls[length++] = a;
+        calls[length++] = b;
+        calls[length++] = c;
+    }
+
+    @Override
+    public void beginAction(long actionIndex) {
+        sink.beginAction(actionIndex);
+        keep(BEGIN, actionIndex, 0, 0);
+    }
+
+    @Override
+    public void record(int opcode, long truckId, long value) throws IOException {
+        sink.record(opcode, truckId, value);
+        keep(RECORD, opcode, truckId, value);
+    }
+
+    @Override
+    public void endLine() throws IOException {
+        sink.endLine();
+        keep(END_LINE, 0, 0, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    /**
+     * Writes the results kept since the last call and forgets them.
+     *
+     * @param out        Receives the results
+     * @param firstIndex The action index the results start at, which replay() is given again
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void save(DataOutput out, long firstIndex) throws IOException {
+        writeNumber(out, length / 4);
+        long previousIndex = firstIndex - 1;
+        for (int i = 0; i < length; i += 4) {
+            if (calls[i] != RECORD) {
+                out.writeByte((int) calls[i]);
+            }
+            if (calls[i] == BEGIN) {
+                writeNumber(out, calls[i + 1] - previousIndex - 1);
+                previousIndex = calls[i + 1];
+            } else if (calls[i] == RECORD) {
+                if (calls[i + 2] == NO_TRUCK) {
+                    out.writeByte(RECORD_WITHOUT_TRUCK);
+                    out.writeByte((int) calls[i + 1]);
+                } else {
+                    out.writeByte(RECORD);
+                    out.writeByte((int) calls[i + 1]);
+                    writeNumber(out, calls[i + 2]);
+                }
+                writeNumber(out, calls[i + 3]);
+            }
+        }
+        length = 0;
+    }
+
+    /**
+     * Forgets the results kept since the last save, for results that were already saved by an earlier run.
+     */
+    void discard() {
+        length = 0;
+    }
+
+    /**
+     * Reads results written by save() and passes them to a sink as if the actions were executed again.
+     *
+     * @param in         Supplies the results
+     * @param firstIndex The action index the results start at
+     * @param sink       Receives the results
+     * @throws IOException If an I/O error occurs while reading or writing
+     */
+    static void replay(DataInput in, long firstIndex, ResultSink sink) throws IOException {
+        long count = readNumber(in);
+        long previousIndex = firstIndex - 1;
+        for (long i = 0; i < count; i++) {
+            int kind = in.readByte();
+            switch (kind) {
+                case BEGIN:
+                    previousIndex += readNumber(in) + 1;
+                    sink.beginAction(previousIndex);
+                    break;
+                case RECORD: {
+                    int opcode = in.readByte();
+                    long truckId = readNumber(in);
+                    sink.record(opcode, truckId, readNumber(in));
+                    break;
+                }
+                case RECORD_WITHOUT_TRUCK: {
+                    int opcode = in.readByte();
+                    sink.record(opcode, NO_TRUCK, readNumber(in));
+                    break;
+                }
+                case END_LINE:
+                    sink.endLine();
+                    break;
+                default:
+                    throw new IOException("corrupt saved results");
+            }
+        }
+    }
+
+    // zigzag and 7 bits per byte, low bits first
+    private static void writeNumber(DataOutput out, long value) throws IOException {
+        long bits = (value << 1) ^ (value >> 63);
+        while ((bits & ~0x7FL) != 0) {
+            out.writeByte((int) (bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte((int) bits);
+    }
+
+    private static long readNumber(DataInput in) throws IOException {
+        long bits = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readByte();
+            bits |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("corrupt saved results");
+    }
+}
@@ -0,0 +1,37 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * ResultSink receives the results produced while the actions are processed.
+ * Every result is a record of the action's opcode, the truck it concerns and a value
+ * (the capacity constraint of the parking lot that was used, or the count for count actions).
+ * Records belonging to the same output line are closed with endLine().
+ */
+public interface ResultSink extends Closeable {
+    long NO_TRUCK = Long.MIN_VALUE;  // truck id of records that do not concern a specific truck, -1 is a valid id
+    long FAILED = -1;                // value of records for actions that could not be performed
+
+    /**
+     * Marks the start of a new action; records written after this call belong to it.
+     *
+     * @param actionIndex Index of the action (line) in the input file, starting from 0
+     */
+    void beginAction(long actionIndex);
+
+    /**
+     * Writes one result record.
+     *
+     * @param opcode  Opcode of the action that produced the result
+     * @param truckId Id of the truck the result concerns, or NO_TRUCK
+     * @param value   Capacity constraint of the parking lot used, the count, or FAILED
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void record(int opcode, long truckId, long value) throws IOException;
+
+    /**
+     * Closes the current output line.
+     *
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void endLine() throws IOException;
+}
@@ -0,0 +1,63 @@
+/**
+ * ResultSummary is a ResultSink that keeps counts of the results instead of writing them,
+ * which is used by benchmarks and by runs that only need summary figures.
+ */
+public class ResultSummary implements ResultSink {
+    private final long[] records = new long[Action.COUNT + 1];   // number of records of each opcode
+    private final long[] failures = new long[Action.COUNT + 1];  // number of FAILED records of each opcode
+    private long lines;                                          // number of output lines
+    private long actions;                                        // number of actions
+
+    @Override
+    public void beginAction(long actionIndex) {
+        actions++;
+    }
+
+    @Override
+    public void record(int opcode, long truckId, long value) {
+        records[opcode]++;
+        // the value of count records is a number of trucks, never a failure
+        if (value == FAILED && opcode != Action.COUNT) {
+            failures[opcode]++;
+        }
+    }
+
+    @Override
+    public void endLine() {
+        lines++;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @param opcode Opcode of an action
+     * @return The number of records written for the action
+     */
+    long records(int opcode) {
+        return records[opcode];
+    }
+
+    /**
+     * @param opcode Opcode of an action
+     * @return The number of records of the action that report a failure
+     */
+    long failures(int opcode) {
+        return failures[opcode];
+    }
+
+    /**
+     * @return The number of output lines
+     */
+    long lines() {
+        return lines;
+    }
+
+    /**
+     * @return The number of actions processed
+     */
+    long actions() {
+        return actions;
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simulator processes actions on one set of parking lots. It keeps the lot table and the four lot indexes
+ * (AVL trees by default) that hold the lots by their statuses, and writes the results of the actions to a ResultSink.
+ */
+public class Simulator implements Closeable {
+    private static final int SNAPSHOT_VERSION = 2;
+    // flags of a lot in a snapshot, one for every index that holds it
+    private static final int IN_AVAILABLE = 1;
+    private static final int IN_READY = 2;
+    private static final int IN_READY_TO_LOAD = 4;
+    private static final int IN_PARKING_LOTS = 8;
+
+    private final LotTable lotTable;                   // State of all parking lots
+    private final LotIndex parkingLots;                // All parking lots
+    private final LotIndex availableParkingLots;       // Available parking lots (lots that can take new truck )
+    private final LotIndex readyParkingLots;           // Ready parking lots (lots that have truck in waiting)
+    private final LotIndex readyToLoadParkingLots;     // Parking lots ready to load (lots that have truck in ready section)
+    private final PlacementPolicy placementPolicy;     // Selects the lots that trucks are placed in
+    private final ResultSink outputFile;               // Receives the results of the actions
+    // lots created with a capacity constraint that parkingLots already had, which only other indexes took
+    private final Map<Long, List<ParkingLot>> duplicateLots = new HashMap<>();
+    private long[] lineOperands = new long[2];         // Operands of the line being executed, reused for every line
+    private long actionCount;                          // Number of actions processed so far
+    private long currentAction;                        // Index of the action being executed, the first of a bulk one
+    private long deliveredLoad;                        // Total load distributed to trucks so far
+
+    /**
+     * Constructs a simulator with no parking lots that keeps them in AVL trees.
+     *
+     * @param placementPolicy The policy that selects the parking lots that trucks are placed in
+     * @param outputFile      The ResultSink that the results are written to
+     */
+    public Simulator(PlacementPolicy placementPolicy, ResultSink outputFile) {
+        this(placementPolicy, "avl", outputFile);
+    }
+
+    /**
+     * Constructs a simulator with no parking lots.
+     *
+     * @param placementPolicy The policy that selects the parking lots that trucks are placed in
+     * @param indexName       The kind of lot index to be used (see LotIndexes)
+     * @param outputFile      The ResultSink that the results are written to
+     */
+    public Simulator(PlacementPolicy placementPolicy, String indexName, ResultSink outputFile) {
+        this(placementPolicy, indexName, false, outputFile);
+    }
+
+    /**
+     * Constructs a simulator with no parking lots.
+     *
+     * @param placementPolicy The policy that selects the parking lots that trucks are placed in
+     * @param indexName       The kind of lot index to be used (see LotIndexes)
+     * @param bestFitReady    True to load the ready truck with the smallest remaining capacity of a lot first
+     *                        instead of the one that became ready first
+     * @param outputFile      The ResultSink that the results are written to
+     */
+    public Simulator(PlacementPolicy placementPolicy, String indexName, boolean bestFitReady, ResultSink outputFile) {
+        this.placementPolicy = placementPolicy;
+        lotTable = new LotTable(bestFitReady);
+        this.outputFile = outputFile;
+        parkingLots = LotIndexes.create(indexName, lotTable, false);
+        availableParkingLots = LotIndexes.create(indexName, lotTable, placementPolicy.tracksOccupancy());
+        readyParkingLots = LotIndexes.create(indexName, lotTable, false);
+        readyToLoadParkingLots = LotIndexes.create(indexName, lotTable, false);
+        // counting reads the truck numbers kept by parkingLots and placement those kept by availableParkingLots,
+        // so these indexes have to follow every change of the trucks if they keep copies of them
+        if (parkingLots.cachesOccupancy()) {
+            lotTable.addListener(handle -> parkingLots.refresh(lotTable.getCapacityConstraint(handle)));
+        }
+        if (availableParkingLots.cachesOccupancy()) {
+            lotTable.addListener(handle -> availableParkingLots.refresh(lotTable.getCapacityConstraint(handle)));
+        }
+    }
+
+    /**
+     * Parses and executes one line of an input file. Lines with an unknown action only advance the action index.
+     *
+     * @param line The line to be executed
+     * @throws IOException If an I/O error occurs while writing the results
+     */
+    public void execute(String line) throws IOException {
+        String[] info = line.split(" "); // in given format words are spaced so, we split by blank char
+        int opcode = Action.parse(info[0]);
+        if (opcode < 0) {
+            outputFile.beginAction(actionCount++);
+            return;
+        }
+        // bulk actions with a list take every number up to the end of the line
+        int count = Action.operandCount(opcode, info.length - 1);
+        if (count > lineOperands.length) {
+            lineOperands = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            lineOperands[i] = Long.parseLong(info[i + 1]);
+        }
+        execute(opcode, lineOperands, 0, count);
+    }
+
+    /**
+     * Executes every action of a buffer in order.
+     *
+     * @param actions The actions to be executed
+     * @throws IOException If an I/O error occurs while writing the results
+     */
+    public void execute(ActionBuffer actions) throws IOException {
+        long[] operands = actions.operands();
+        for (int i = 0; i < actions.size(); i++) {
+            execute(actions.opcode(i), operands, actions.operandOffset(i), actions.operandCount(i));
+        }
+    }
+
+    /**
+     * Executes one decoded action.
+     *
+     * @param opcode   Opcode of the action
+     * @param operands Array holding the operands of the action
+     * @param offset   Offset of the action's first operand in the array
+     * @param count    Number of operands of the action
+     * @throws IOException If an I/O error occurs while writing the results
+     */
+    public void execute(int opcode, long[] operands, int offset, int count) throws IOException {
+        currentAction = actionCount;
+        if (Action.isBulk(opcode)) {
+            executeBulk(opcode, operands, offset, count);
+            return;
+        }
+        outputFile.beginAction(actionCount++);
+        switch (opcode) {
+            // process create_parking_lot <capacity constraint> <truck limit> (given format)
+            case Action.CREATE_PARKING_LOT: {
+                ParkingLot parkingLot = Methods.createParkingLot(lotTable, operands[offset], operands[offset + 1]);
+                // after creating the lot it is initially added to parking lots
+                // and availableParkingLots (lots that have place, initially all lots have place)
+                int lotCount = parkingLots.size();
+                int availableCount = availableParkingLots.size();
+                parkingLots.insertElement(parkingLot);
+                availableParkingLots.insertElement(parkingLot);
+                // the trees keep the first lot of a capacity constraint, a later one is only reachable through
+                // the indexes that did not have that constraint; its row is freed when the constraint is deleted
+                if (parkingLots.size() == lotCount) {
+                    if (availableParkingLots.size() == availableCount) {
+                        parkingLot.release(); // no index took the lot
+                    } else {
+                        duplicateLots.computeIfAbsent(parkingLot.getCapacityConstraint(), key -> new ArrayList<>())
+                                .add(parkingLot);
+                    }
+                }
+                break;
+            }
+            // process delete_parking_lot <capacity constraint>
+            case Action.DELETE_PARKING_LOT: {
+                long capacityConstraint = operands[offset];
+                ParkingLot parkingLot = parkingLots.searchElement(capacityConstraint);
+                // parking lot should be deleted from all AVL trees since no operation can be done on it now
+                parkingLots.deleteElement(capacityConstraint);
+                availableParkingLots.deleteElement(capacityConstraint);
+                readyParkingLots.deleteElement(capacityConstraint);
+                readyToLoadParkingLots.deleteElement(capacityConstraint);
+                // its row in the lot table can be reused after it is removed from the trees
+                if (parkingLot != null) {
+                    parkingLot.release();
+                }
+                if (!duplicateLots.isEmpty()) {
+                    List<ParkingLot> duplicates = duplicateLots.remove(capacityConstraint);
+                    if (duplicates != null) {
+                        for (ParkingLot duplicate : duplicates) {
+                            duplicate.release();
+                        }
+                    }
+                }
+                break;
+            }
+            // process add_truck <id> <capacity>
+            case Action.ADD_TRUCK:
+                Methods.addToParkingLot(availableParkingLots, readyParkingLots,
+                        new Truck(operands[offset], operands[offset + 1]), placementPolicy, outputFile);
+                break;
+            // process ready <capacity constraint>
+            case Action.READY:
+                Methods.transferToReady(readyParkingLots, readyToLoadParkingLots, operands[offset], outputFile);
+                break;
+            // process load <capacity constraint> <load amount>
+            case Action.LOAD:
+                deliveredLoad += Methods.loadToTrucks(availableParkingLots, readyParkingLots, readyToLoadParkingLots,
+                        placementPolicy, operands[offset], operands[offset + 1], outputFile);
+                break;
+            // process count <capacity constraint>
+            case Action.COUNT: {
+                long totalTruckNumber = Methods.countTrucksInLargerLots(parkingLots, operands[offset]);
+                // in the count unlike the others, returned value is written here
+                outputFile.record(Action.COUNT, ResultSink.NO_TRUCK, totalTruckNumber);
+                outputFile.endLine();
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    // executes a bulk action, which takes an action index for each truck, ready or load it stands for
+    private void executeBulk(int opcode, long[] operands, int offset, int count) throws IOException {
+        switch (opcode) {
+            // process add_trucks <capacity> <id> [<id> ...]
+            case Action.ADD_TRUCKS:
+                Methods.addTrucksToParkingLot(availableParkingLots, readyParkingLots, operands[offset], operands,
+                        offset + 1, count - 1, placementPolicy, outputFile, actionCount);
+                actionCount += count - 1;
+                break;
+            // process ready_n <capacity constraint> <n>
+            case Action.READY_N: {
+                long readyCount = Math.max(operands[offset + 1], 0);
+                Methods.transferToReady(readyParkingLots, readyToLoadParkingLots, operands[offset], readyCount,
+                        outputFile, actionCount);
+                actionCount += readyCount;
+                break;
+            }
+            // process load_batch <capacity constraint> <load amount> [<capacity constraint> <load amount> ...]
+            case Action.LOAD_BATCH:
+                if (count % 2 != 0) {
+                    throw new IllegalArgumentException("load_batch takes pairs of capacity constraint and load amount");
+                }
+                for (int i = offset; i < offset + count; i += 2) {
+                    outputFile.beginAction(actionCount++);
+                    deliveredLoad += Methods.loadToTrucks(availableParkingLots, readyParkingLots,
+                            readyToLoadParkingLots, placementPolicy, operands[i], operands[i + 1], outputFile);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Writes the state of the simulator: its counters, the state of the placement policy, and every lot with its
+     * trucks in the order they will leave and the indexes it is in, including lots whose capacity constraint was
+     * already taken when they were created. The kind of lot index is not written, so a
+     * snapshot can be read by a simulator with any index, but the placement policy and ready order must be the same.
+     *
+     * @param out Receives the snapshot
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void writeSnapshot(DataOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(actionCount);
+        out.writeLong(deliveredLoad);
+        long[] policyState = placementPolicy.saveState();
+        out.writeInt(policyState.length);
+        for (long value : policyState) {
+            out.writeLong(value);
+        }
+        List<ParkingLot> lots = new ArrayList<>(parkingLots.size());
+        parkingLots.forEachElement(lots::add);
+        for (List<ParkingLot> duplicates : duplicateLots.values()) {
+            lots.addAll(duplicates);
+        }
+        out.writeInt(lots.size());
+        List<Truck> trucks = new ArrayList<>();
+        for (ParkingLot lot : lots) {
+            long capacityConstraint = lot.getCapacityConstraint();
+            out.writeLong(capacityConstraint);
+            out.writeLong(lot.getTruckLimit());
+            // lots are in an index for what they hold, except that lots with no room may stay available until
+            // a placement looks at them, so the indexes are written as they are rather than worked out again;
+            // an index holds this lot only if it finds its row, as a duplicate lot may hold the constraint there
+            int flags = 0;
+            if (holds(parkingLots, lot)) {
+                flags |= IN_PARKING_LOTS;
+            }
+            if (holds(availableParkingLots, lot)) {
+                flags |= IN_AVAILABLE;
+            }
+            if (holds(readyParkingLots, lot)) {
+                flags |= IN_READY;
+            }
+            if (holds(readyToLoadParkingLots, lot)) {
+                flags |= IN_READY_TO_LOAD;
+            }
+            out.writeByte(flags);
+            trucks.clear();
+            lotTable.forEachReadyTruck(lot.getHandle(), trucks::add);
+            writeTrucks(out, trucks);
+            trucks.clear();
+            lotTable.forEachWaitingTruck(lot.getHandle(), trucks::add);
+            writeTrucks(out, trucks);
+        }
+    }
+
+    // true if the index holds this lot rather than another lot with the same capacity constraint
+    private static boolean holds(LotIndex index, ParkingLot lot) {
+        ParkingLot found = index.searchElement(lot.getCapacityConstraint());
+        return found != null && found.getHandle() == lot.getHandle();
+    }
+
+    private static void writeTrucks(DataOutput out, List<Truck> trucks) throws IOException {
+        out.writeInt(trucks.size());
+        for (Truck truck : trucks) {
+            out.writeLong(truck.getId());
+            out.writeLong(truck.getCapacity());
+            out.writeLong(truck.getLoad());
+        }
+    }
+
+    /**
+     * Reads a snapshot written by writeSnapshot(), which replaces the state of a simulator that has no lots yet.
+     *
+     * @param in Supplies the snapshot
+     * @throws IOException If an I/O error occurs while reading, or the snapshot has another version
+     */
+    void readSnapshot(DataInput in) throws IOException {
+        if (parkingLots.size() != 0) {
+            throw new IllegalStateException("a snapshot can only be read by a simulator without lots");
+        }
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        actionCount = in.readLong();
+        deliveredLoad = in.readLong();
+        long[] policyState = new long[in.readInt()];
+        for (int i = 0; i < policyState.length; i++) {
+            policyState[i] = in.readLong();
+        }
+        placementPolicy.restoreState(policyState);
+        int lotCount = in.readInt();
+        for (int i = 0; i < lotCount; i++) {
+            ParkingLot lot = Methods.createParkingLot(lotTable, in.readLong(), in.readLong());
+            int flags = in.readByte();
+            // ready trucks pass through the waiting section in the order they will be loaded
+            int readyCount = in.readInt();
+            for (int j = 0; j < readyCount; j++) {
+                lot.addTruck(readTruck(in));
+                lot.moveToReady();
+            }
+            int waitingCount = in.readInt();
+            for (int j = 0; j < waitingCount; j++) {
+                lot.addTruck(readTruck(in));
+            }
+            if ((flags & IN_PARKING_LOTS) != 0) {
+                parkingLots.insertElement(lot);
+            } else {
+                duplicateLots.computeIfAbsent(lot.getCapacityConstraint(), key -> new ArrayList<>()).add(lot);
+            }
+            if ((flags & IN_AVAILABLE) != 0) {
+                availableParkingLots.insertElement(lot);
+            }
+            if ((flags & IN_READY) != 0) {
+                readyParkingLots.insertElement(lot);
+            }
+            if ((flags & IN_READY_TO_LOAD) != 0) {
+                readyToLoadParkingLots.insertElement(lot);
+            }
+        }
+    }
+
+    private static Truck readTruck(DataInput in) throws IOException {
+        return new Truck(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Starts recording the waiting and ready truck numbers of every lot at each change from now on.
+     *
+     * @return The recorder, which can be queried or dumped at any time
+     */
+    OccupancyRecorder recordOccupancy() {
+        OccupancyRecorder recorder = new OccupancyRecorder(lotTable, () -> currentAction);
+        lotTable.addListener(recorder);
+        return recorder;
+    }
+
+    /**
+     * @return The number of action indexes used so far, which is the index of the next action
+     */
+    long actionCount() {
+        return actionCount;
+    }
+
+    /**
+     * @return The total load distributed to trucks by the load actions so far
+     */
+    long deliveredLoad() {
+        return deliveredLoad;
+    }
+
+    /**
+     * @return The four lot indexes: all lots, available lots, lots with waiting trucks and lots with ready trucks
+     */
+    LotIndex[] indexes() {
+        return new LotIndex[]{parkingLots, availableParkingLots, readyParkingLots, readyToLoadParkingLots};
+    }
+
+    /**
+     * Closes the lot indexes, which deletes the files of mapped ones. The simulator cannot be used afterwards.
+     *
+     * @throws IOException If an index cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for (LotIndex index : indexes()) {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * SiteOutputWriter collects the text output of one site in memory and appends it to the site's file
+ * whenever FLUSH_SIZE characters have been collected. The file is only open while it is being appended to,
+ * so thousands of sites can write their own files without running out of file handles.
+ */
+public class SiteOutputWriter extends Writer {
+    private static final int FLUSH_SIZE = 16 * 1024;  // characters collected before they are appended to the file
+
+    private final String path;                                            // file of the site
+    private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE);   // output not yet written to the file
+
+    /**
+     * Creates the file of the site, truncating it if it exists.
+     *
+     * @param path Path of the output file
+     * @throws IOException If the file cannot be created
+     */
+    public SiteOutputWriter(String path) throws IOException {
+        this.path = path;
+        new FileWriter(path).close();
+    }
+
+    @Override
+    public void write(char[] characters, int offset, int length) throws IOException {
+        buffer.append(characters, offset, length);
+        if (buffer.length() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(String text) throws IOException {
+        buffer.append(text);
+        if (buffer.length() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        try (FileWriter file = new FileWriter(path, true)) {
+            file.append(buffer);
+        }
+        buffer.setLength(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SiteRouter runs many independent sites (depots), each with its own Simulator, on a fixed set of worker threads.
+ * Every site is assigned to one worker by its id, so all actions of a site are executed by the same thread
+ * in the order they were submitted and the simulators need no locking. Actions are handed to the workers
+ * in batches through bounded queues, and each site writes its results to its own ResultSink.
+ * Submitting and closing must be done from a single thread.
+ */
+public class SiteRouter implements Closeable {
+    private static final int BATCH_SIZE = 4096;   // actions handed to a worker at once
+    private static final int QUEUE_LENGTH = 16;   // batches that may wait for each worker
+
+    /**
+     * SinkFactory opens the output of a site when its first action arrives.
+     */
+    interface SinkFactory {
+        /**
+         * @param siteId Id of the site
+         * @return The ResultSink that the results of the site are written to
+         * @throws IOException If the output cannot be opened
+         */
+        ResultSink open(long siteId) throws IOException;
+    }
+
+    // actions of several sites, all assigned to the same worker
+    private static class Batch {
+        long[] siteIds = new long[BATCH_SIZE];  // site of each action
+        final ActionBuffer actions = new ActionBuffer();
+    }
+
+    private static final Batch END = new Batch();  // tells a worker that no more batches will come
+
+    private final Worker[] workers;
+    private final Batch[] pending;                    // batch being filled for each worker
+    private long[] lineOperands = new long[2];        // operands of the line being parsed, reused for every line
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param threadCount Number of worker threads
+     * @param policyName  Placement policy of every site (see PlacementPolicies)
+     * @param indexName   Kind of lot index of every site (see LotIndexes)
+     * @param sinks       Opens the output of each site
+     */
+    public SiteRouter(int threadCount, String policyName, String indexName, SinkFactory sinks) {
+        this(threadCount, policyName, indexName, false, sinks);
+    }
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param threadCount  Number of worker threads
+     * @param policyName   Placement policy of every site (see PlacementPolicies)
+     * @param indexName    Kind of lot index of every site (see LotIndexes)
+     * @param bestFitReady True to load the ready trucks of a lot by smallest remaining capacity (see Simulator)
+     * @param sinks        Opens the output of each site
+     */
+    public SiteRouter(int threadCount, String policyName, String indexName, boolean bestFitReady, SinkFactory sinks) {
+        workers = new Worker[threadCount];
+        pending = new Batch[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(policyName, indexName, bestFitReady, sinks);
+            workers[i].setName("site-worker-" + i);
+            workers[i].setDaemon(true); // a failed run must not keep the JVM alive
+            workers[i].start();
+            pending[i] = new Batch();
+        }
+    }
+
+    /**
+     * Queues an action of a site. The operands are copied, so the array can be reused by the caller.
+     *
+     * @param siteId   Id of the site
+     * @param opcode   Opcode of the action
+     * @param operands Array holding the operands of the action
+     * @param offset   Offset of the action's first operand in the array
+     * @param count    Number of operands of the action
+     * @throws IOException If a worker has failed
+     */
+    public void submit(long siteId, int opcode, long[] operands, int offset, int count) throws IOException {
+        int worker = workerOf(siteId);
+        Batch batch = pending[worker];
+        batch.siteIds[batch.actions.size()] = siteId;
+        batch.actions.add(opcode);
+        for (int i = 0; i < count; i++) {
+            batch.actions.addOperand(operands[offset + i]);
+        }
+        if (batch.actions.size() == BATCH_SIZE) {
+            hand(worker, batch);
+            pending[worker] = new Batch();
+        }
+    }
+
+    /**
+     * Parses a line of the form "<site id> <action> <operands>" and queues it.
+     *
+     * @param line The line to be queued, lines with an unknown action are ignored
+     * @throws IOException If a worker has failed
+     */
+    public void submit(String line) throws IOException {
+        String[] info = line.split(" ");
+        if (info.length < 2) {
+            return;
+        }
+        int opcode = Action.parse(info[1]);
+        if (opcode < 0) {
+            return;
+        }
+        int count = Action.operandCount(opcode, info.length - 2);
+        if (count > lineOperands.length) {
+            lineOperands = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            lineOperands[i] = Long.parseLong(info[i + 2]);
+        }
+        submit(Long.parseLong(info[0]), opcode, lineOperands, 0, count);
+    }
+
+    // the worker that owns a site, sites are spread evenly even when their ids follow a pattern
+    private int workerOf(long siteId) {
+        long mixed = siteId * 0x9E3779B97F4A7C15L;
+        return (int) ((mixed >>> 32) % workers.length);
+    }
+
+    // passes a batch to a worker, waiting while its queue is full
+    private void hand(int worker, Batch batch) throws IOException {
+        try {
+            while (!workers[worker].queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                workers[worker].checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while queueing actions", e);
+        }
+        workers[worker].checkFailure();
+    }
+
+    /**
+     * Hands the remaining actions to the workers, waits until all of them are executed and closes every site's output.
+     *
+     * @throws IOException If a worker has failed or an output cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < workers.length; i++) {
+            if (pending[i].actions.size() > 0) {
+                hand(i, pending[i]);
+            }
+            hand(i, END);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for the workers", e);
+            }
+            worker.checkFailure();
+        }
+    }
+
+    /**
+     * Worker executes the batches of its sites and owns their simulators and outputs.
+     */
+    private static class Worker extends Thread {
+        final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_LENGTH);
+        private final String policyName;
+        private final String indexName;
+        private final boolean bestFitReady;
+        private final SinkFactory sinks;
+        private final HashMap<Long, Simulator> simulators = new HashMap<>();  // simulator of each site
+        private final HashMap<Long, ResultSink> outputs = new HashMap<>();    // output of each site
+        private volatile Throwable failure;  // first error of the worker, reported to the submitting thread
+
+        Worker(String policyName, String indexName, boolean bestFitReady, SinkFactory sinks) {
+            this.policyName = policyName;
+            this.indexName = indexName;
+            this.bestFitReady = bestFitReady;
+            this.sinks = sinks;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = queue.take();
+                    if (batch == END) {
+                        break;
+                    }
+                    execute(batch);
+                }
+                for (ResultSink output : outputs.values()) {
+                    output.close();
+                }
+                for (Simulator simulator : simulators.values()) {
+                    simulator.close();
+                }
+            } catch (Throwable e) {
+                failure = e;
+                queue.clear(); // the submitting thread must not block on a worker that stopped
+                while (true) {
+                    try {
+                        if (queue.take() == END) {
+                            return;
+                        }
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void execute(Batch batch) throws IOException {
+            ActionBuffer actions = batch.actions;
+            long[] operands = actions.operands();
+            for (int i = 0; i < actions.size(); i++) {
+                Simulator simulator = simulators.get(batch.siteIds[i]);
+                if (simulator == null) {
+                    ResultSink output = sinks.open(batch.siteIds[i]);
+                    outputs.put(batch.siteIds[i], output);
+                    simulator = new Simulator(PlacementPolicies.forName(policyName), indexName, bestFitReady, output);
+                    simulators.put(batch.siteIds[i], simulator);
+                }
+                simulator.execute(actions.opcode(i), operands, actions.operandOffset(i), actions.operandCount(i));
+            }
+        }
+
+        // rethrows the error of the worker in the submitting thread
+        void checkFailure() throws IOException {
+            if (failure != null) {
+                throw new IOException(getName() + " failed", failure);
+            }
+        }
+    }
+}
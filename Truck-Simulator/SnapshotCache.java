@@ -0,0 +1,223 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SnapshotCache keeps simulator snapshots in a local directory so that inputs which start with the same actions
+ * as an earlier input only execute the actions after the longest common start. Every interval actions an entry is
+ * stored under a hash of the settings and of all actions up to that point; an entry holds the results of the actions
+ * since the previous entry (see RecordingSink) and the state of the simulator after them (see Simulator.writeSnapshot).
+ * A run looks up the entries of its own points in order, replays the results of every entry it finds, restores the
+ * state of the last one and executes the rest, storing the entries that were missing.
+ * <p>
+ * The hash of a point covers the opcodes and operands of every action before it, so an entry can only be found by
+ * an input that is the same up to that point; it is two independent 64-bit hashes, which makes collisions between
+ * different inputs negligible. The kind of lot index is not part of the settings, as it does not change the results.
+ * The directory is kept under a size limit by deleting the entries that were least recently stored or used.
+ * An entry is of no use without the entries before it, so a run stamps its later points as slightly older
+ * than its earlier ones, and eviction shortens chains of entries from their end.
+ */
+public class SnapshotCache {
+    static final int DEFAULT_INTERVAL = 100_000;           // actions between entries
+    static final long DEFAULT_MAX_BYTES = 256L << 20;      // size limit of the directory
+    private static final int MAGIC = 0x54534E50;           // "TSNP" at the start of every entry
+    private static final int FORMAT = 2;                   // part of every key, so older entries are never found
+    private static final String SUFFIX = ".snap";
+
+    private final File directory;
+    private final long maxBytes;
+    private final int interval;
+    private final String settings;    // placement policy and ready order, which the entries depend on
+
+    /**
+     * @param directory The directory of the entries, created if it does not exist
+     * @param maxBytes  The size limit of the directory
+     * @param interval  The number of actions between entries
+     * @param settings  The settings that change the results, as a string that is the same for the same settings
+     */
+    public SnapshotCache(File directory, long maxBytes, int interval, String settings) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("snapshot interval must be at least 1: " + interval);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.interval = interval;
+        this.settings = settings;
+        directory.mkdirs();
+    }
+
+    /**
+     * Executes decoded actions on a simulator, starting from the longest stored start of them.
+     *
+     * @param chunks    The actions, as decoded by a ParallelActionReader
+     * @param simulator A simulator without lots that writes its results to recording
+     * @param recording The sink of the simulator, which passes its results on to output
+     * @param output    The sink that receives the results of the actions that are not executed
+     * @return The number of actions that were not executed because a stored entry covered them
+     * @throws IOException If an I/O error occurs while reading or writing entries or results
+     */
+    long run(List<ActionBuffer> chunks, Simulator simulator, RecordingSink recording, ResultSink output)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        long[] keys = pointKeys(chunks);
+        int points = keys.length / 2;
+        // the entries must follow each other from the start, as each one has only the results since the previous one
+        int restored = 0;
+        while (restored < points && entryFile(keys, restored + 1).exists()) {
+            restored++;
+        }
+        // entries are opened before any result is replayed, so an eviction by another run cannot cut the chain short
+        List<DataInputStream> inputs = new ArrayList<>();
+        try {
+            for (int point = 1; point <= restored; point++) {
+                File file = entryFile(keys, point);
+                try {
+                    inputs.add(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+                } catch (IOException e) {
+                    restored = point - 1;  // deleted since it was found
+                    break;
+                }
+                file.setLastModified(now - point);
+            }
+            for (int point = 1; point <= restored; point++) {
+                DataInputStream in = inputs.get(point - 1);
+                if (in.readInt() != MAGIC || in.readLong() != (long) point * interval) {
+                    throw new IOException("corrupt snapshot " + entryFile(keys, point));
+                }
+                RecordingSink.replay(in, in.readLong(), output);
+                if (point == restored) {
+                    simulator.readSnapshot(in);
+                }
+            }
+        } finally {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+        }
+
+        long skipped = (long) restored * interval;
+        long position = 0;  // number of actions before the current one
+        long segmentStart = simulator.actionCount();  // action index of the first result kept by recording
+        for (ActionBuffer actions : chunks) {
+            long[] operands = actions.operands();
+            for (int i = 0; i < actions.size(); i++, position++) {
+                if (position < skipped) {
+                    continue;
+                }
+                simulator.execute(actions.opcode(i), operands, actions.operandOffset(i), actions.operandCount(i));
+                if ((position + 1) % interval == 0) {
+                    int point = (int) ((position + 1) / interval);
+                    store(keys, point, now - point, recording, segmentStart, simulator);
+                    segmentStart = simulator.actionCount();
+                }
+            }
+        }
+        recording.discard();
+        return skipped;
+    }
+
+    // hashes the settings and the actions, and returns the two halves of the hash at every point in order
+    private long[] pointKeys(List<ActionBuffer> chunks) {
+        long total = 0;
+        for (ActionBuffer actions : chunks) {
+            total += actions.size();
+        }
+        long[] keys = new long[(int) (total / interval) * 2];
+        long first = mix(0x6A09E667F3BCC908L, FORMAT);
+        long second = mix(0xBB67AE8584CAA73BL, FORMAT);
+        for (int i = 0; i < settings.length(); i++) {
+            first = mix(first, settings.charAt(i));
+            second = mix(second ^ 0x5851F42D4C957F2DL, settings.charAt(i));
+        }
+        long position = 0;
+        for (ActionBuffer actions : chunks) {
+            long[] operands = actions.operands();
+            for (int i = 0; i < actions.size(); i++) {
+                long header = (long) actions.opcode(i) << 32 | actions.operandCount(i);
+                first = mix(first, header);
+                second = mix(second ^ 0x5851F42D4C957F2DL, header);
+                int offset = actions.operandOffset(i);
+                for (int j = offset; j < offset + actions.operandCount(i); j++) {
+                    first = mix(first, operands[j]);
+                    second = mix(second ^ 0x5851F42D4C957F2DL, operands[j]);
+                }
+                if (++position % interval == 0) {
+                    int point = (int) (position / interval);
+                    keys[2 * point - 2] = first;
+                    keys[2 * point - 1] = second;
+                }
+            }
+        }
+        return keys;
+    }
+
+    // folds a value into a running hash with a multiply and the final mix of MurmurHash3
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    private File entryFile(long[] keys, int point) {
+        return new File(directory, String.format("%016x%016x%s", keys[2 * point - 2], keys[2 * point - 1], SUFFIX));
+    }
+
+    // writes the entry of a point through a temporary file, so that other runs never see half an entry
+    private void store(long[] keys, int point, long stamp, RecordingSink recording, long segmentStart,
+                       Simulator simulator) throws IOException {
+        File file = entryFile(keys, point);
+        File temporary = File.createTempFile("entry", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeLong((long) point * interval);
+                out.writeLong(segmentStart);
+                recording.save(out, segmentStart);
+                simulator.writeSnapshot(out);
+            }
+            temporary.setLastModified(stamp);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+        evict();
+    }
+
+    // deletes the least recently stored or used entries until the directory is within its size limit
+    private void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            size += files[i].length();
+            modified[i] = files[i].lastModified();  // read once, as the sort must not see it change
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+        for (int i = 0; i < order.length && size > maxBytes; i++) {
+            long length = files[order[i]].length();
+            if (files[order[i]].delete()) {
+                size -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Sweep replays one input file under many variants of the simulator settings at once, for capacity planning.
+ * The file is decoded once, and every variant reads the same ActionBuffers while it runs its own Simulator,
+ * with its own lot table and indexes, on a ForkJoinPool. The buffers are never modified: the few operands a
+ * variant changes are rewritten into a small array of the variant as each action is executed, so memory grows
+ * with the number of variants and the lots they hold, not with copies of the input.
+ * <pre>
+ *   java Sweep &lt;input_file&gt; &lt;variant&gt; [&lt;variant&gt; ...] [--threads=n]
+ * </pre>
+ * A variant is a comma separated list of settings, for example "policy=most-free,limit-scale=2":
+ * <ul>
+ *   <li>policy=name: placement policy (see PlacementPolicies), best-fit by default</li>
+ *   <li>index=name: lot index (see LotIndexes), avl by default</li>
+ *   <li>ready=fifo|best-fit: order of the ready sections (see LotTable), fifo by default</li>
+ *   <li>limit-scale=x: truck limits of the created lots are multiplied by x and rounded</li>
+ *   <li>capacity-step=n: capacity constraints of created and deleted lots are rounded down to a multiple of n,
+ *   so lots that round to the same constraint are created like repeated create_parking_lot actions</li>
+ * </ul>
+ * A setting may list values separated by '|', which gives one variant per combination of values:
+ * "policy=best-fit|most-free,limit-scale=1|2" is four variants. Every variant prints one line of summary figures,
+ * in the order the variants were given.
+ */
+public class Sweep {
+    public static void main(String[] args) throws IOException {
+        File actionsFile = new File(args[0]);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--threads=")) {
+                threadCount = Integer.parseInt(args[i].substring("--threads=".length()));
+            } else {
+                expand(args[i], variants);
+            }
+        }
+        if (variants.isEmpty()) {
+            variants.add(new Variant(""));
+        }
+        if (!actionsFile.exists()) {
+            System.out.printf("%s cannot be found.", actionsFile);
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        List<ActionBuffer> chunks = decode(actionsFile, threadCount);
+        long actionCount = 0;
+        for (ActionBuffer chunk : chunks) {
+            actionCount += chunk.size();
+        }
+        System.out.printf("%d actions decoded in %.0f ms, %d variants on %d threads%n", actionCount,
+                (System.nanoTime() - start) / 1e6, variants.size(), threadCount);
+        System.out.printf("%-40s %10s %10s %10s %10s %10s %14s %9s%n", "variant", "placed", "add fail",
+                "ready fail", "returned", "load fail", "load", "ms");
+
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+            for (Variant variant : variants) {
+                tasks.add(pool.submit(() -> run(variant, chunks)));
+            }
+            // results are printed in the order of the variants, each as soon as it and the ones before it are done
+            for (int i = 0; i < tasks.size(); i++) {
+                Result result = tasks.get(i).get();
+                ResultSummary summary = result.summary;
+                // trucks that went back to a lot after loading write a record with the lot
+                long returned = summary.records(Action.LOAD) - summary.failures(Action.LOAD);
+                System.out.printf("%-40s %10d %10d %10d %10d %10d %14d %9.0f%n", variants.get(i).label,
+                        summary.records(Action.ADD_TRUCK) - summary.failures(Action.ADD_TRUCK),
+                        summary.failures(Action.ADD_TRUCK), summary.failures(Action.READY), returned,
+                        summary.failures(Action.LOAD), result.deliveredLoad, result.nanos / 1e6);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // decodes the whole file into the chunks of a ParallelActionReader, which are kept as they are
+    private static List<ActionBuffer> decode(File actionsFile, int threadCount) throws IOException {
+        List<ActionBuffer> chunks = new ArrayList<>();
+        try (ParallelActionReader reader = new ParallelActionReader(actionsFile, threadCount,
+                ParallelActionReader.DEFAULT_CHUNK_SIZE)) {
+            for (ActionBuffer chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Adds the variants of a specification, one for every combination of the values of its settings.
+     *
+     * @param specification Comma separated settings whose values may be alternatives separated by '|'
+     * @param variants      Receives the variants
+     * @throws IllegalArgumentException If a setting is not known or its value cannot be parsed
+     */
+    static void expand(String specification, List<Variant> variants) {
+        List<String> combinations = new ArrayList<>();
+        combinations.add("");
+        for (String setting : specification.split(",")) {
+            int equals = setting.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("a setting must be name=value: " + setting);
+            }
+            List<String> longer = new ArrayList<>();
+            for (String combination : combinations) {
+                for (String value : setting.substring(equals + 1).split("\\|")) {
+                    String single = setting.substring(0, equals + 1) + value;
+                    longer.add(combination.isEmpty() ? single : combination + "," + single);
+                }
+            }
+            combinations = longer;
+        }
+        for (String combination : combinations) {
+            variants.add(new Variant(combination));
+        }
+    }
+
+    /**
+     * Runs one variant on the shared actions.
+     *
+     * @param variant The settings of the run
+     * @param chunks  The actions, which are only read
+     * @return The summary figures of the run
+     * @throws IOException If the simulator fails to write a result
+     */
+    static Result run(Variant variant, List<ActionBuffer> chunks) throws IOException {
+        ResultSummary summary = new ResultSummary();
+        Simulator simulator = new Simulator(PlacementPolicies.forName(variant.policyName), variant.indexName,
+                variant.bestFitReady, summary);
+        long[] changed = new long[2];  // operands of the create or delete action being rewritten
+        long start = System.nanoTime();
+        for (ActionBuffer actions : chunks) {
+            long[] operands = actions.operands();
+            for (int i = 0; i < actions.size(); i++) {
+                int opcode = actions.opcode(i);
+                int offset = actions.operandOffset(i);
+                int count = actions.operandCount(i);
+                if (opcode == Action.CREATE_PARKING_LOT && variant.changesLots()) {
+                    changed[0] = variant.capacityConstraint(operands[offset]);
+                    changed[1] = variant.truckLimit(operands[offset + 1]);
+                    simulator.execute(opcode, changed, 0, count);
+                } else if (opcode == Action.DELETE_PARKING_LOT && variant.capacityStep != 1) {
+                    changed[0] = variant.capacityConstraint(operands[offset]);
+                    simulator.execute(opcode, changed, 0, count);
+                } else {
+                    simulator.execute(opcode, operands, offset, count);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        simulator.close(); // deletes the files of mapped indexes
+        return new Result(summary, simulator.deliveredLoad(), elapsed);
+    }
+
+    /**
+     * Variant holds the settings of one run.
+     */
+    static class Variant {
+        final String label;            // the settings as given, or "default"
+        String policyName = "best-fit";
+        String indexName = "avl";
+        boolean bestFitReady;
+        double limitScale = 1;
+        long capacityStep = 1;
+
+        /**
+         * @param settings Comma separated name=value settings, each with a single value
+         * @throws IllegalArgumentException If a setting is not known or its value cannot be parsed
+         */
+        Variant(String settings) {
+            label = settings.isEmpty() ? "default" : settings;
+            if (settings.isEmpty()) {
+                return;
+            }
+            for (String setting : settings.split(",")) {
+                int equals = setting.indexOf('=');
+                String name = equals < 0 ? setting : setting.substring(0, equals);
+                String value = equals < 0 ? "" : setting.substring(equals + 1);
+                switch (name) {
+                    case "policy":
+                        PlacementPolicies.forName(value); // fails now rather than in the middle of the sweep
+                        policyName = value;
+                        break;
+                    case "index":
+                        indexName = value;
+                        break;
+                    case "ready":
+                        if (!value.equals("fifo") && !value.equals("best-fit")) {
+                            throw new IllegalArgumentException("unknown ready order: " + value);
+                        }
+                        bestFitReady = value.equals("best-fit");
+                        break;
+                    case "limit-scale":
+                        limitScale = Double.parseDouble(value);
+                        break;
+                    case "capacity-step":
+                        capacityStep = Long.parseLong(value);
+                        if (capacityStep < 1) {
+                            throw new IllegalArgumentException("capacity-step must be at least 1: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown sweep setting: " + name);
+                }
+            }
+        }
+
+        // true if the operands of create_parking_lot actions have to be rewritten
+        boolean changesLots() {
+            return limitScale != 1 || capacityStep != 1;
+        }
+
+        long capacityConstraint(long capacityConstraint) {
+            return Math.floorDiv(capacityConstraint, capacityStep) * capacityStep;
+        }
+
+        long truckLimit(long truckLimit) {
+            return Math.round(truckLimit * limitScale);
+        }
+    }
+
+    /**
+     * Result holds the summary figures of one run.
+     */
+    static class Result {
+        final ResultSummary summary;
+        final long deliveredLoad;
+        final long nanos;  // time the run took, while sharing the processors with the other variants
+
+        Result(ResultSummary summary, long deliveredLoad, long nanos) {
+            this.summary = summary;
+            this.deliveredLoad = deliveredLoad;
+            this.nanos = nanos;
+        }
+    }
+}
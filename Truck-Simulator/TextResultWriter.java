@@ -0,0 +1,48 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * TextResultWriter writes the results in the text format of output.txt.
+ * Records on the same line are separated by " - ", add_truck and count results are written
+ * as the value only, and the other results as "<id> <capacity constraint>".
+ */
+public class TextResultWriter implements ResultSink {
+    private final Writer writer;   // destination of the text output
+    private int recordsInLine;     // number of records written to the current line
+
+    /**
+     * @param writer The writer that the output lines are written to
+     */
+    public TextResultWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void beginAction(long actionIndex) {
+        // the text format does not contain action indices
+    }
+
+    @Override
+    public void record(int opcode, long truckId, long value) throws IOException {
+        // to write in <> - <> format
+        if (recordsInLine > 0) {
+            writer.write(" - ");
+        }
+        if (opcode != Action.ADD_TRUCK && opcode != Action.COUNT && truckId != NO_TRUCK) {
+            writer.write(truckId + " ");
+        }
+        writer.write(Long.toString(value));
+        recordsInLine++;
+    }
+
+    @Override
+    public void endLine() throws IOException {
+        writer.write("\n");
+        recordsInLine = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,448 @@
+import java.util.function.Consumer;
+
+/**
+ * TreapLotIndex keeps the lots in a treap: a binary search tree on the capacity constraints that is also a
+ * heap on random priorities, so its shape is that of a tree built by inserting the lots in random order and its
+ * expected depth is O(log n) whatever the order of the actions. A node keeps no balance information; an
+ * insertion rotates the new node up while its priority beats its parent's, and a deletion merges the two
+ * subtrees of the node by priority. The priorities come from a fixed seed, so runs are repeatable.
+ * A treap that tracks occupancy keeps the most free slots and the fewest trucks of every subtree for findBestLot().
+ */
+class TreapLotIndex implements LotIndex {
+    private static class TreapNode {
+        final ParkingLot element;
+        final long key;       // capacity constraint of the element
+        final int priority;   // larger priorities are nearer the root
+        TreapNode leftChild;
+        TreapNode rightChild;
+
+        TreapNode(ParkingLot element, int priority) {
+            this.element = element;
+            key = element.getCapacityConstraint();
+            this.priority = priority;
+        }
+    }
+
+    // node of a treap that tracks occupancy, only such treaps pay for the aggregates of the subtrees
+    private static final class TreapOccupancyNode extends TreapNode {
+        long maxFreeSlots;     // largest number of free slots among the lots of the subtree
+        long minTruckNumber;   // smallest number of trucks among the available lots of the subtree
+
+        TreapOccupancyNode(ParkingLot element, int priority) {
+            super(element, priority);
+        }
+    }
+
+    private TreapNode rootNode;
+    private int size;                        // number of nodes in the tree
+    private long seed = 0x2545F4914F6CDD1DL;  // state of the xorshift generator of the priorities
+    // when true, nodes keep the occupancy aggregates of their subtrees, which findBestLot() relies on
+    private final boolean tracksOccupancy;
+
+    TreapLotIndex(boolean tracksOccupancy) {
+        this.tracksOccupancy = tracksOccupancy;
+    }
+
+    // the next priority, from a xorshift generator, which is enough for balancing
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed >>> 32);
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        rootNode = insertElement(element, rootNode);
+    }
+
+    // inserts below a node and returns the root of its subtree
+    private TreapNode insertElement(ParkingLot element, TreapNode node) {
+        if (node == null) {
+            size++;
+            TreapNode leaf = tracksOccupancy ? new TreapOccupancyNode(element, nextPriority())
+                    : new TreapNode(element, nextPriority());
+            updateAggregates(leaf);
+            return leaf;
+        }
+        long key = element.getCapacityConstraint();
+        if (key < node.key) {
+            node.leftChild = insertElement(element, node.leftChild);
+            if (node.leftChild.priority > node.priority) {
+                // rotate the new node above this one
+                TreapNode child = node.leftChild;
+                node.leftChild = child.rightChild;
+                child.rightChild = node;
+                updateAggregates(node);
+                updateAggregates(child);
+                return child;
+            }
+        } else if (key > node.key) {
+            node.rightChild = insertElement(element, node.rightChild);
+            if (node.rightChild.priority > node.priority) {
+                TreapNode child = node.rightChild;
+                node.rightChild = child.leftChild;
+                child.leftChild = node;
+                updateAggregates(node);
+                updateAggregates(child);
+                return child;
+            }
+        }
+        // a lot with the same capacity constraint is already in the tree, nothing to do
+        updateAggregates(node); // the subtree may have gained a lot
+        return node;
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        // find the link to the node, then replace the node by the merge of its subtrees
+        TreapNode parent = null;
+        TreapNode node = rootNode;
+        while (node != null && node.key != capacityConstraint) {
+            parent = node;
+            node = capacityConstraint < node.key ? node.leftChild : node.rightChild;
+        }
+        if (node == null) {
+            return; // there is no such lot
+        }
+        TreapNode merged = merge(node.leftChild, node.rightChild);
+        if (parent == null) {
+            rootNode = merged;
+        } else if (parent.leftChild == node) {
+            parent.leftChild = merged;
+        } else {
+            parent.rightChild = merged;
+        }
+        size--;
+        refresh(capacityConstraint); // the ancestors of the node lost its lot
+    }
+
+    // merges two treaps whose keys are all smaller in the first one, walking down their facing spines
+    private TreapNode merge(TreapNode left, TreapNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.rightChild = merge(left.rightChild, right);
+            updateAggregates(left);
+            return left;
+        }
+        right.leftChild = merge(left, right.leftChild);
+        updateAggregates(right);
+        return right;
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        TreapNode node = rootNode;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        TreapNode node = rootNode;
+        TreapNode predecessor = null;
+        while (node != null) {
+            if (capacityConstraint > node.key) {
+                predecessor = node;
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        return predecessor != null ? predecessor.element : null;
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        TreapNode node = rootNode;
+        TreapNode successor = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                successor = node;
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return successor != null ? successor.element : null;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        TreapNode node = rootNode;
+        TreapNode floor = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                floor = node;
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return floor != null ? floor.element : null;
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        TreapNode node = rootNode;
+        TreapNode ceiling = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                ceiling = node;
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return ceiling != null ? ceiling.element : null;
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        long total = 0;
+        // walk towards the constraint, every node above it brings its right subtree along
+        TreapNode node = rootNode;
+        while (node != null) {
+            if (node.key > capacityConstraint) {
+                total += trucks(node) + countTrucks(node.rightChild);
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return total;
+    }
+
+    // number of trucks in the lot of a node
+    private static long trucks(TreapNode node) {
+        return node.element.getTruckNumberInWaiting() + node.element.getTruckNumberInReady();
+    }
+
+    // number of trucks in all lots of a subtree
+    private static long countTrucks(TreapNode node) {
+        long total = 0;
+        while (node != null) {
+            total += trucks(node) + countTrucks(node.leftChild);
+            node = node.rightChild;
+        }
+        return total;
+    }
+
+    // recomputes the occupancy aggregates of a node from its element and children
+    private void updateAggregates(TreapNode node) {
+        if (!tracksOccupancy) {
+            return;
+        }
+        long maxFreeSlots = node.element.getFreeSlots();
+        long minTruckNumber = node.element.getAvailability() ? trucks(node) : Long.MAX_VALUE;
+        if (node.leftChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((TreapOccupancyNode) node.leftChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((TreapOccupancyNode) node.leftChild).minTruckNumber);
+        }
+        if (node.rightChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((TreapOccupancyNode) node.rightChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((TreapOccupancyNode) node.rightChild).minTruckNumber);
+        }
+        ((TreapOccupancyNode) node).maxFreeSlots = maxFreeSlots;
+        ((TreapOccupancyNode) node).minTruckNumber = minTruckNumber;
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return tracksOccupancy;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        if (tracksOccupancy) {
+            refresh(rootNode, capacityConstraint);
+        }
+    }
+
+    // recomputes the aggregates on the path to the lot, bottom up
+    private void refresh(TreapNode node, long capacityConstraint) {
+        if (node == null) {
+            return;
+        }
+        if (capacityConstraint < node.key) {
+            refresh(node.leftChild, capacityConstraint);
+        } else if (capacityConstraint > node.key) {
+            refresh(node.rightChild, capacityConstraint);
+        }
+        updateAggregates(node);
+    }
+
+    // score of a single lot, a higher score is better
+    private static long score(ParkingLot lot, int scoring) {
+        if (scoring == FREE_SLOTS) {
+            return lot.getFreeSlots();
+        }
+        return lot.getAvailability() ? -(lot.getTruckNumberInWaiting() + lot.getTruckNumberInReady()) : -Long.MAX_VALUE;
+    }
+
+    // best score in a subtree
+    private static long bestScore(TreapNode node, int scoring) {
+        if (node == null) {
+            return -Long.MAX_VALUE;
+        }
+        TreapOccupancyNode aggregates = (TreapOccupancyNode) node;
+        return scoring == FREE_SLOTS ? aggregates.maxFreeSlots : -aggregates.minTruckNumber;
+    }
+
+    /**
+     * Finds the best lot in [low, high] from the two boundary paths below the node where the paths to low and
+     * high split, in expected O(log n). A treap has no bound on its depth, so the paths are walked once for the
+     * best score and once more for the lot with the largest capacity constraint that reaches it, without buffers.
+     */
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findBestLot(low, high, scoring);
+        }
+        TreapNode split = rootNode;
+        while (split != null && (split.key < low || split.key > high)) {
+            split = split.key < low ? split.rightChild : split.leftChild;
+        }
+        if (split == null) {
+            return null;
+        }
+        long target = score(split.element, scoring);
+        for (TreapNode node = split.rightChild; node != null; ) {
+            if (node.key <= high) {
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.leftChild, scoring)));
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        for (TreapNode node = split.leftChild; node != null; ) {
+            if (node.key >= low) {
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.rightChild, scoring)));
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        if (target == -Long.MAX_VALUE || (scoring == FREE_SLOTS && target <= 0)) {
+            return null; // no lot in the range can take a truck
+        }
+
+        // the keys grow down the path towards high, the last node or left subtree there that reaches the target wins
+        TreapNode found = null;
+        boolean foundSubtree = false;
+        for (TreapNode node = split.rightChild; node != null; ) {
+            if (node.key <= high) {
+                if (score(node.element, scoring) >= target) {
+                    found = node;
+                    foundSubtree = false;
+                } else if (bestScore(node.leftChild, scoring) >= target) {
+                    found = node.leftChild;
+                    foundSubtree = true;
+                }
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        if (found != null) {
+            return foundSubtree ? findRightmostWithScore(found, target, scoring) : found.element;
+        }
+        if (score(split.element, scoring) >= target) {
+            return split.element;
+        }
+        // the keys shrink down the path towards low, the first right subtree or node there that reaches it wins
+        for (TreapNode node = split.leftChild; node != null; ) {
+            if (node.key >= low) {
+                if (bestScore(node.rightChild, scoring) >= target) {
+                    return findRightmostWithScore(node.rightChild, target, scoring);
+                }
+                if (score(node.element, scoring) >= target) {
+                    return node.element;
+                }
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return null;
+    }
+
+    // finds the lot with the largest capacity constraint whose score reaches the target in a subtree that has one
+    private static ParkingLot findRightmostWithScore(TreapNode node, long target, int scoring) {
+        while (true) {
+            if (bestScore(node.rightChild, scoring) >= target) {
+                node = node.rightChild;
+            } else if (score(node.element, scoring) >= target) {
+                return node.element;
+            } else {
+                node = node.leftChild;
+            }
+        }
+    }
+
+    /**
+     * Finds the first available lot in [low, high] like MyAvlTree does, skipping the subtrees without free slots,
+     * in expected O(log n).
+     */
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findFirstAvailableLot(low, high);
+        }
+        TreapNode node = findFirstAvailable(rootNode, low, high);
+        return node != null ? node.element : null;
+    }
+
+    // the leftmost node in the range whose lot has free slots
+    private static TreapNode findFirstAvailable(TreapNode node, long low, long high) {
+        if (node == null || ((TreapOccupancyNode) node).maxFreeSlots <= 0) {
+            return null; // no lot of the subtree can take a truck
+        }
+        if (node.key < low) {
+            return findFirstAvailable(node.rightChild, low, high);
+        }
+        if (node.key > high) {
+            return findFirstAvailable(node.leftChild, low, high);
+        }
+        TreapNode found = findFirstAvailable(node.leftChild, low, high);
+        if (found == null && node.element.getFreeSlots() > 0) {
+            found = node;
+        }
+        return found != null ? found : findFirstAvailable(node.rightChild, low, high);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        forEachElement(rootNode, action);
+    }
+
+    private void forEachElement(TreapNode node, Consumer<ParkingLot> action) {
+        while (node != null) {
+            forEachElement(node.leftChild, action);
+            action.accept(node.element);
+            node = node.rightChild;
+        }
+    }
+}
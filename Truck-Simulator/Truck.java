@@ -31,6 +31,20 @@ public class Truck {
         this.remainingCapacity = capacity;
     }
 
+    /**
+     * Constructs a truck that already carries a load, as it was saved in a snapshot.
+     *
+     * @param id       Unique identifier for the truck
+     * @param capacity Maximum capacity of the truck
+     * @param load     Current load in the truck
+     */
+    Truck(long id, long capacity, long load) {
+        this.id = id;
+        this.capacity = capacity;
+        this.load = load;
+        this.remainingCapacity = capacity - load;
+    }
+
     /**
      * Returns the ID of the truck.
      *
@@ -49,6 +63,20 @@ public class Truck {
         return this.remainingCapacity;
     }
 
+    /**
+     * @return the maximum capacity of the truck
+     */
+    long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the current load in the truck
+     */
+    long getLoad() {
+        return this.load;
+    }
+
     /**
      * Adds the specified load to the truck and updates the remaining capacity.
      *
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * TruckHeap is a binary min-heap of trucks keyed by their remaining capacity, which a ready section uses
+ * in place of a queue so that loads go to the truck that fits them best. Trucks with equal remaining capacity
+ * leave in the order they arrived, so a lot whose trucks all have the same remaining capacity behaves like a queue.
+ * The remaining capacity of a truck does not change while it waits in the heap, so keys are copied into a
+ * primitive array when a truck arrives and no truck ever has to be found and moved inside the heap.
+ */
+public class TruckHeap {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private Truck[] trucks = new Truck[INITIAL_CAPACITY];
+    private long[] capacities = new long[INITIAL_CAPACITY];  // remaining capacity of each truck
+    private long[] arrivals = new long[INITIAL_CAPACITY];    // arrival number of each truck, breaks ties
+    private int size;
+    private long nextArrival;
+
+    // true if the entry at position a must leave before the one at position b
+    private boolean before(int a, int b) {
+        return capacities[a] < capacities[b] || capacities[a] == capacities[b] && arrivals[a] < arrivals[b];
+    }
+
+    private void swap(int a, int b) {
+        Truck truck = trucks[a];
+        trucks[a] = trucks[b];
+        trucks[b] = truck;
+        long capacity = capacities[a];
+        capacities[a] = capacities[b];
+        capacities[b] = capacity;
+        long arrival = arrivals[a];
+        arrivals[a] = arrivals[b];
+        arrivals[b] = arrival;
+    }
+
+    /**
+     * Adds a truck in O(log n).
+     *
+     * @param truck The truck to be added
+     */
+    public void add(Truck truck) {
+        if (size == trucks.length) {
+            trucks = Arrays.copyOf(trucks, size * 2);
+            capacities = Arrays.copyOf(capacities, size * 2);
+            arrivals = Arrays.copyOf(arrivals, size * 2);
+        }
+        int position = size++;
+        trucks[position] = truck;
+        capacities[position] = truck.getCapacityConstraint();
+        arrivals[position] = nextArrival++;
+        // sift up
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!before(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Removes the truck with the smallest remaining capacity in O(log n), the earliest one among equals.
+     *
+     * @return The removed truck, or null if the heap is empty
+     */
+    public Truck remove() {
+        if (size == 0) {
+            return null;
+        }
+        Truck first = trucks[0];
+        size--;
+        swap(0, size);
+        trucks[size] = null;
+        // sift down
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(child + 1, child)) {
+                child++;
+            }
+            if (!before(child, position)) {
+                break;
+            }
+            swap(position, child);
+            position = child;
+        }
+        return first;
+    }
+
+    /**
+     * Visits the trucks in the order remove() would return them, without removing them.
+     *
+     * @param action Called with every truck
+     */
+    public void forEachInOrder(Consumer<Truck> action) {
+        TruckHeap copy = new TruckHeap();
+        copy.trucks = Arrays.copyOf(trucks, size);
+        copy.capacities = Arrays.copyOf(capacities, size);
+        copy.arrivals = Arrays.copyOf(arrivals, size);
+        copy.size = size;
+        while (!copy.isEmpty()) {
+            action.accept(copy.remove());
+        }
+    }
+
+    /**
+     * @return The number of trucks in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return True if the heap holds no truck
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,550 @@
+import java.util.function.Consumer;
+
+/**
+ * WavlLotIndex keeps the lots in a weak AVL tree (Haeupler, Sen and Tarjan, "Rank-Balanced Trees").
+ * Every node has a rank, and the rank difference between a node and each of its children
+ * is 1 or 2, with missing children at rank -1 and leaves at rank 0. Insertions rebalance as in an AVL tree,
+ * so a tree that only grows is an AVL tree, but a deletion ends after at most two rotations, where an AVL
+ * tree may have to rotate at every level of the path. Rebalancing only looks at ranks, never at heights.
+ * Like MyAvlTree, a tree that tracks occupancy keeps the most free slots and the fewest trucks of every subtree,
+ * so findBestLot() takes O(log n).
+ */
+class WavlLotIndex implements LotIndex {
+    private static class WavlNode {
+        ParkingLot element;
+        long key;              // capacity constraint of the element
+        int rank;
+        WavlNode leftChild;
+        WavlNode rightChild;
+
+        WavlNode(ParkingLot element) {
+            this.element = element;
+            key = element.getCapacityConstraint();
+        }
+    }
+
+    // node of a tree that tracks occupancy, only such trees pay for the aggregates of the subtrees
+    private static final class WavlOccupancyNode extends WavlNode {
+        long maxFreeSlots;     // largest number of free slots among the lots of the subtree
+        long minTruckNumber;   // smallest number of trucks among the available lots of the subtree
+
+        WavlOccupancyNode(ParkingLot element) {
+            super(element);
+        }
+    }
+
+    private WavlNode rootNode;
+    private int size;  // number of nodes in the tree
+    // when true, nodes keep the occupancy aggregates of their subtrees, which findBestLot() relies on
+    private final boolean tracksOccupancy;
+
+    WavlLotIndex(boolean tracksOccupancy) {
+        this.tracksOccupancy = tracksOccupancy;
+    }
+
+    // rank of a node, -1 for a missing child
+    private static int rank(WavlNode node) {
+        return node == null ? -1 : node.rank;
+    }
+
+    @Override
+    public void insertElement(ParkingLot element) {
+        rootNode = insertElement(element, rootNode);
+    }
+
+    // inserts below a node and returns the root of its subtree, whose rank grows by at most one
+    private WavlNode insertElement(ParkingLot element, WavlNode node) {
+        if (node == null) {
+            size++;
+            // a leaf of rank 0
+            WavlNode leaf = tracksOccupancy ? new WavlOccupancyNode(element) : new WavlNode(element);
+            updateAggregates(leaf);
+            return leaf;
+        }
+        long key = element.getCapacityConstraint();
+        if (key < node.key) {
+            node.leftChild = insertElement(element, node.leftChild);
+            if (rank(node.leftChild) == node.rank) {
+                // the left child reached the rank of the node: promote the node if its other child allows it
+                if (node.rank - rank(node.rightChild) == 1) {
+                    node.rank++;
+                } else {
+                    node = rebalanceLeftInsertion(node);
+                }
+            }
+        } else if (key > node.key) {
+            node.rightChild = insertElement(element, node.rightChild);
+            if (rank(node.rightChild) == node.rank) {
+                if (node.rank - rank(node.leftChild) == 1) {
+                    node.rank++;
+                } else {
+                    node = rebalanceRightInsertion(node);
+                }
+            }
+        }
+        // a lot with the same capacity constraint is already in the tree, nothing to do
+        updateAggregates(node); // the subtree may have gained a lot
+        return node;
+    }
+
+    // the left child has the rank of the node and the right child is two ranks below, one or two rotations
+    // restore the rank rule without changing the rank of the subtree
+    private WavlNode rebalanceLeftInsertion(WavlNode node) {
+        WavlNode child = node.leftChild;
+        if (child.rank - rank(child.rightChild) == 2) {
+            node.rank--;
+            return rotateWithLeftChild(node);
+        }
+        WavlNode grandchild = child.rightChild;
+        child.rank--;
+        node.rank--;
+        grandchild.rank++;
+        node.leftChild = rotateWithRightChild(child);
+        return rotateWithLeftChild(node);
+    }
+
+    private WavlNode rebalanceRightInsertion(WavlNode node) {
+        WavlNode child = node.rightChild;
+        if (child.rank - rank(child.leftChild) == 2) {
+            node.rank--;
+            return rotateWithRightChild(node);
+        }
+        WavlNode grandchild = child.leftChild;
+        child.rank--;
+        node.rank--;
+        grandchild.rank++;
+        node.rightChild = rotateWithLeftChild(child);
+        return rotateWithRightChild(node);
+    }
+
+    // rotations only move nodes and update their aggregates, the callers set the ranks
+    private WavlNode rotateWithLeftChild(WavlNode node) {
+        WavlNode child = node.leftChild;
+        node.leftChild = child.rightChild;
+        child.rightChild = node;
+        updateAggregates(node);
+        updateAggregates(child);
+        return child;
+    }
+
+    private WavlNode rotateWithRightChild(WavlNode node) {
+        WavlNode child = node.rightChild;
+        node.rightChild = child.leftChild;
+        child.leftChild = node;
+        updateAggregates(node);
+        updateAggregates(child);
+        return child;
+    }
+
+    @Override
+    public void deleteElement(long capacityConstraint) {
+        rootNode = deleteElement(rootNode, capacityConstraint);
+    }
+
+    // deletes below a node and returns the root of its subtree, whose rank shrinks by at most one
+    private WavlNode deleteElement(WavlNode node, long capacityConstraint) {
+        if (node == null) {
+            return null; // there is no such lot
+        }
+        if (capacityConstraint < node.key) {
+            node.leftChild = deleteElement(node.leftChild, capacityConstraint);
+        } else if (capacityConstraint > node.key) {
+            node.rightChild = deleteElement(node.rightChild, capacityConstraint);
+        } else if (node.leftChild == null || node.rightChild == null) {
+            // the only child, if any, takes the place of the node and keeps its rank
+            size--;
+            return node.leftChild != null ? node.leftChild : node.rightChild;
+        } else {
+            // the in-order successor takes the place of the node and is deleted from the right subtree
+            WavlNode successor = node.rightChild;
+            while (successor.leftChild != null) {
+                successor = successor.leftChild;
+            }
+            node.element = successor.element;
+            node.key = successor.key;
+            node.rightChild = deleteElement(node.rightChild, successor.key);
+        }
+        node = rebalanceDeletion(node);
+        updateAggregates(node);
+        return node;
+    }
+
+    // restores the rank rule at a node one of whose children may have lost a rank
+    private WavlNode rebalanceDeletion(WavlNode node) {
+        if (node.leftChild == null && node.rightChild == null) {
+            node.rank = 0; // a node that lost its last child is a leaf again
+            return node;
+        }
+        if (node.rank - rank(node.leftChild) == 3) {
+            WavlNode sibling = node.rightChild;
+            if (node.rank - rank(sibling) == 2) {
+                node.rank--; // the node moves down with its child, its parent decides whether to go on
+                return node;
+            }
+            int outer = sibling.rank - rank(sibling.rightChild);
+            int inner = sibling.rank - rank(sibling.leftChild);
+            if (outer == 2 && inner == 2) {
+                node.rank--; // both move down
+                sibling.rank--;
+                return node;
+            }
+            if (outer == 1) {
+                // a single rotation, after which the subtree keeps its rank and rebalancing stops
+                sibling.rank++;
+                node.rank--;
+                if (node.leftChild == null && sibling.leftChild == null) {
+                    node.rank--;
+                }
+                return rotateWithRightChild(node);
+            }
+            // a double rotation through the inner child of the sibling, which also stops
+            WavlNode grandchild = sibling.leftChild;
+            grandchild.rank += 2;
+            sibling.rank--;
+            node.rank -= 2;
+            node.rightChild = rotateWithLeftChild(sibling);
+            return rotateWithRightChild(node);
+        }
+        if (node.rank - rank(node.rightChild) == 3) {
+            WavlNode sibling = node.leftChild;
+            if (node.rank - rank(sibling) == 2) {
+                node.rank--;
+                return node;
+            }
+            int outer = sibling.rank - rank(sibling.leftChild);
+            int inner = sibling.rank - rank(sibling.rightChild);
+            if (outer == 2 && inner == 2) {
+                node.rank--;
+                sibling.rank--;
+                return node;
+            }
+            if (outer == 1) {
+                sibling.rank++;
+                node.rank--;
+                if (node.rightChild == null && sibling.rightChild == null) {
+                    node.rank--;
+                }
+                return rotateWithLeftChild(node);
+            }
+            WavlNode grandchild = sibling.rightChild;
+            grandchild.rank += 2;
+            sibling.rank--;
+            node.rank -= 2;
+            node.leftChild = rotateWithRightChild(sibling);
+            return rotateWithLeftChild(node);
+        }
+        return node;
+    }
+
+    @Override
+    public ParkingLot searchElement(long capacityConstraint) {
+        WavlNode node = rootNode;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ParkingLot findHighestSmallerElement(long capacityConstraint) {
+        WavlNode node = rootNode;
+        WavlNode predecessor = null;
+        while (node != null) {
+            if (capacityConstraint > node.key) {
+                predecessor = node;
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        return predecessor != null ? predecessor.element : null;
+    }
+
+    @Override
+    public ParkingLot findLeastBiggerElement(long capacityConstraint) {
+        WavlNode node = rootNode;
+        WavlNode successor = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                successor = node;
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return successor != null ? successor.element : null;
+    }
+
+    @Override
+    public ParkingLot findFloorElement(long capacityConstraint) {
+        WavlNode node = rootNode;
+        WavlNode floor = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                floor = node;
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return floor != null ? floor.element : null;
+    }
+
+    @Override
+    public ParkingLot findCeilingElement(long capacityConstraint) {
+        WavlNode node = rootNode;
+        WavlNode ceiling = null;
+        while (node != null) {
+            if (capacityConstraint < node.key) {
+                ceiling = node;
+                node = node.leftChild;
+            } else if (capacityConstraint > node.key) {
+                node = node.rightChild;
+            } else {
+                return node.element;
+            }
+        }
+        return ceiling != null ? ceiling.element : null;
+    }
+
+    @Override
+    public long countTrucksInLargerLots(long capacityConstraint) {
+        long total = 0;
+        // walk towards the constraint, every node above it brings its right subtree along
+        WavlNode node = rootNode;
+        while (node != null) {
+            if (node.key > capacityConstraint) {
+                total += trucks(node) + countTrucks(node.rightChild);
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return total;
+    }
+
+    // number of trucks in the lot of a node
+    private static long trucks(WavlNode node) {
+        return node.element.getTruckNumberInWaiting() + node.element.getTruckNumberInReady();
+    }
+
+    // number of trucks in all lots of a subtree
+    private static long countTrucks(WavlNode node) {
+        long total = 0;
+        while (node != null) {
+            total += trucks(node) + countTrucks(node.leftChild);
+            node = node.rightChild;
+        }
+        return total;
+    }
+
+    // recomputes the occupancy aggregates of a node from its element and children
+    private void updateAggregates(WavlNode node) {
+        if (!tracksOccupancy) {
+            return;
+        }
+        long maxFreeSlots = node.element.getFreeSlots();
+        long minTruckNumber = node.element.getAvailability() ? trucks(node) : Long.MAX_VALUE;
+        if (node.leftChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((WavlOccupancyNode) node.leftChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((WavlOccupancyNode) node.leftChild).minTruckNumber);
+        }
+        if (node.rightChild != null) {
+            maxFreeSlots = Math.max(maxFreeSlots, ((WavlOccupancyNode) node.rightChild).maxFreeSlots);
+            minTruckNumber = Math.min(minTruckNumber, ((WavlOccupancyNode) node.rightChild).minTruckNumber);
+        }
+        ((WavlOccupancyNode) node).maxFreeSlots = maxFreeSlots;
+        ((WavlOccupancyNode) node).minTruckNumber = minTruckNumber;
+    }
+
+    @Override
+    public boolean cachesOccupancy() {
+        return tracksOccupancy;
+    }
+
+    @Override
+    public void refresh(long capacityConstraint) {
+        if (tracksOccupancy) {
+            refresh(rootNode, capacityConstraint);
+        }
+    }
+
+    // recomputes the aggregates on the path to the lot, bottom up
+    private void refresh(WavlNode node, long capacityConstraint) {
+        if (node == null) {
+            return;
+        }
+        if (capacityConstraint < node.key) {
+            refresh(node.leftChild, capacityConstraint);
+        } else if (capacityConstraint > node.key) {
+            refresh(node.rightChild, capacityConstraint);
+        }
+        updateAggregates(node);
+    }
+
+    // score of a single lot, a higher score is better
+    private static long score(ParkingLot lot, int scoring) {
+        if (scoring == FREE_SLOTS) {
+            return lot.getFreeSlots();
+        }
+        return lot.getAvailability() ? -(lot.getTruckNumberInWaiting() + lot.getTruckNumberInReady()) : -Long.MAX_VALUE;
+    }
+
+    // best score in a subtree
+    private static long bestScore(WavlNode node, int scoring) {
+        if (node == null) {
+            return -Long.MAX_VALUE;
+        }
+        WavlOccupancyNode aggregates = (WavlOccupancyNode) node;
+        return scoring == FREE_SLOTS ? aggregates.maxFreeSlots : -aggregates.minTruckNumber;
+    }
+
+    /**
+     * Finds the best lot in [low, high] from the two boundary paths below the node where the paths to low and
+     * high split, like MyAvlTree does. The ranks only bound the height by 2 log n, so the paths are walked twice
+     * rather than buffered: once for the best score, then for the lot with the largest capacity constraint that
+     * reaches it.
+     */
+    @Override
+    public ParkingLot findBestLot(long low, long high, int scoring) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findBestLot(low, high, scoring);
+        }
+        WavlNode split = rootNode;
+        while (split != null && (split.key < low || split.key > high)) {
+            split = split.key < low ? split.rightChild : split.leftChild;
+        }
+        if (split == null) {
+            return null;
+        }
+        long target = score(split.element, scoring);
+        for (WavlNode node = split.rightChild; node != null; ) {
+            if (node.key <= high) {
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.leftChild, scoring)));
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        for (WavlNode node = split.leftChild; node != null; ) {
+            if (node.key >= low) {
+                target = Math.max(target, Math.max(score(node.element, scoring), bestScore(node.rightChild, scoring)));
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        if (target == -Long.MAX_VALUE || (scoring == FREE_SLOTS && target <= 0)) {
+            return null; // no lot in the range can take a truck
+        }
+
+        // the keys grow down the path towards high, so the last node or left subtree there that reaches the target
+        // holds the answer
+        WavlNode found = null;
+        boolean foundSubtree = false;
+        for (WavlNode node = split.rightChild; node != null; ) {
+            if (node.key <= high) {
+                if (score(node.element, scoring) >= target) {
+                    found = node;
+                    foundSubtree = false;
+                } else if (bestScore(node.leftChild, scoring) >= target) {
+                    found = node.leftChild;
+                    foundSubtree = true;
+                }
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        if (found != null) {
+            return foundSubtree ? findRightmostWithScore(found, target, scoring) : found.element;
+        }
+        if (score(split.element, scoring) >= target) {
+            return split.element;
+        }
+        // the keys shrink down the path towards low, so the first right subtree or node that reaches it is the answer
+        for (WavlNode node = split.leftChild; node != null; ) {
+            if (node.key >= low) {
+                if (bestScore(node.rightChild, scoring) >= target) {
+                    return findRightmostWithScore(node.rightChild, target, scoring);
+                }
+                if (score(node.element, scoring) >= target) {
+                    return node.element;
+                }
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return null;
+    }
+
+    // finds the lot with the largest capacity constraint whose score reaches the target in a subtree that has one
+    private static ParkingLot findRightmostWithScore(WavlNode node, long target, int scoring) {
+        while (true) {
+            if (bestScore(node.rightChild, scoring) >= target) {
+                node = node.rightChild;
+            } else if (score(node.element, scoring) >= target) {
+                return node.element;
+            } else {
+                node = node.leftChild;
+            }
+        }
+    }
+
+    /**
+     * Finds the first available lot in [low, high] like MyAvlTree does, skipping the subtrees without free slots.
+     */
+    @Override
+    public ParkingLot findFirstAvailableLot(long low, long high) {
+        if (!tracksOccupancy) {
+            return LotIndex.super.findFirstAvailableLot(low, high);
+        }
+        WavlNode node = findFirstAvailable(rootNode, low, high);
+        return node != null ? node.element : null;
+    }
+
+    // the leftmost node in the range whose lot has free slots
+    private static WavlNode findFirstAvailable(WavlNode node, long low, long high) {
+        if (node == null || ((WavlOccupancyNode) node).maxFreeSlots <= 0) {
+            return null; // no lot of the subtree can take a truck
+        }
+        if (node.key < low) {
+            return findFirstAvailable(node.rightChild, low, high);
+        }
+        if (node.key > high) {
+            return findFirstAvailable(node.leftChild, low, high);
+        }
+        WavlNode found = findFirstAvailable(node.leftChild, low, high);
+        if (found == null && node.element.getFreeSlots() > 0) {
+            found = node;
+        }
+        return found != null ? found : findFirstAvailable(node.rightChild, low, high);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEachElement(Consumer<ParkingLot> action) {
+        forEachElement(rootNode, action);
+    }
+
+    private void forEachElement(WavlNode node, Consumer<ParkingLot> action) {
+        while (node != null) {
+            forEachElement(node.leftChild, action);
+            action.accept(node.element);
+            node = node.rightChild;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * WorkloadGenerator creates random but valid action streams for benchmarks.
+ * Parking lots get capacity constraints that are multiples of 10 out of a fixed number of candidates,
+ * trucks get capacities slightly above one of them, and the other actions pick candidates uniformly,
+ * or with a Zipf distribution of the given skew to model streams that keep coming back to a few constraints.
+ * About 8% of the actions create lots, 2% delete them, 35% add trucks, 25% are ready, 20% load and 10% count.
+ */
+public class WorkloadGenerator {
+    private final long seed;          // seed of the random generator, equal seeds give equal streams
+    private final int lotCount;       // number of candidate capacity constraints
+    private final int maxTruckLimit;  // truck limits of the lots are in [0, maxTruckLimit]
+    private final double skew;        // exponent of the Zipf distribution of candidates, 0 for uniform
+
+    /**
+     * @param seed          Seed of the random generator
+     * @param lotCount      Number of candidate capacity constraints, which bounds the number of lots
+     * @param maxTruckLimit Largest truck limit of a lot
+     */
+    public WorkloadGenerator(long seed, int lotCount, int maxTruckLimit) {
+        this(seed, lotCount, maxTruckLimit, 0);
+    }
+
+    /**
+     * @param seed          Seed of the random generator
+     * @param lotCount      Number of candidate capacity constraints, which bounds the number of lots
+     * @param maxTruckLimit Largest truck limit of a lot
+     * @param skew          Zipf exponent of the candidate choice, 0 picks candidates uniformly
+     */
+    public WorkloadGenerator(long seed, int lotCount, int maxTruckLimit, double skew) {
+        this.seed = seed;
+        this.lotCount = lotCount;
+        this.maxTruckLimit = maxTruckLimit;
+        this.skew = skew;
+    }
+
+    // cumulative probabilities of the Zipf ranks, or null for a uniform choice
+    private double[] rankDistribution() {
+        if (skew == 0) {
+            return null;
+        }
+        double[] cumulative = new double[lotCount];
+        double total = 0;
+        for (int rank = 0; rank < lotCount; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < lotCount; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+
+    // gives every rank its own candidate, so the popular constraints are spread over the whole range
+    private int[] rankCandidates(Random random) {
+        int[] candidates = new int[lotCount];
+        for (int i = 0; i < lotCount; i++) {
+            int j = random.nextInt(i + 1);
+            candidates[i] = candidates[j];
+            candidates[j] = i;
+        }
+        return candidates;
+    }
+
+    /**
+     * Generates a stream of actions.
+     *
+     * @param actionCount Number of actions to be generated
+     * @return The generated actions
+     */
+    public ActionBuffer generate(int actionCount) {
+        Random random = new Random(seed);
+        double[] cumulative = rankDistribution();
+        int[] candidates = cumulative != null ? rankCandidates(random) : null;
+        ActionBuffer actions = new ActionBuffer();
+        boolean[] exists = new boolean[lotCount];  // which candidates currently have a lot
+        long[] existing = new long[lotCount];      // candidates that have a lot, in no particular order
+        int existingCount = 0;
+        long nextTruckId = 1;
+        while (actions.size() < actionCount) {
+            int kind = random.nextInt(100);
+            int candidate;
+            if (cumulative == null) {
+                candidate = random.nextInt(lotCount);
+            } else {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+                candidate = candidates[Math.min(rank < 0 ? -rank - 1 : rank, lotCount - 1)];
+            }
+            long capacityConstraint = (candidate + 1) * 10L;
+            if (kind < 8) {
+                if (exists[candidate]) {
+                    continue;
+                }
+                exists[candidate] = true;
+                existing[existingCount++] = candidate;
+                actions.add(Action.CREATE_PARKING_LOT);
+                actions.addOperand(capacityConstraint);
+                actions.addOperand(random.nextInt(maxTruckLimit + 1));
+            } else if (kind < 10) {
+                if (existingCount == 0) {
+                    continue;
+                }
+                int index = random.nextInt(existingCount);
+                int deleted = (int) existing[index];
+                existing[index] = existing[--existingCount];
+                exists[deleted] = false;
+                actions.add(Action.DELETE_PARKING_LOT);
+                actions.addOperand((deleted + 1) * 10L);
+            } else if (kind < 45) {
+                actions.add(Action.ADD_TRUCK);
+                actions.addOperand(nextTruckId++);
+                actions.addOperand(capacityConstraint + random.nextInt(10));
+            } else if (kind < 70) {
+                actions.add(Action.READY);
+                actions.addOperand(capacityConstraint);
+            } else if (kind < 90) {
+                actions.add(Action.LOAD);
+                actions.addOperand(capacityConstraint);
+                actions.addOperand(1 + random.nextInt(300));
+            } else {
+                actions.add(Action.COUNT);
+                actions.addOperand(capacityConstraint);
+            }
+        }
+        return actions;
+    }
+}